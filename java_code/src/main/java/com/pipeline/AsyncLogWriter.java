@@ -0,0 +1,207 @@
+package com.pipeline;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * LOG_MODE=async back end of {@link PipelineLogger}. Callers claim a slot in a bounded lock-free ring
+ * (CAS on the tail sequence) and return; one flusher thread prints the console line and writes the
+ * events to dbo.PipelineLogs in multi-row INSERTs, on its own auto-commit connection per DB target.
+ * When the ring is full the event is dropped (LOG_ASYNC_FULL_POLICY=drop, counted per run and reported as
+ * a Warning row of that run) or the caller waits for space (block).
+ */
+final class AsyncLogWriter {
+
+    /** One log row plus the DB it goes to. */
+    static final class Event {
+        final DbTarget target;
+        final String runId, pipelineName, logAt, level, stepName, message, details, consoleLine;
+        final Integer stepNumber;
+
+        Event(DbTarget target, String runId, String pipelineName, String logAt, String level, Integer stepNumber,
+              String stepName, String message, String details, String consoleLine) {
+            this.target = target;
+            this.runId = runId;
+            this.pipelineName = pipelineName;
+            this.logAt = logAt;
+            this.level = level;
+            this.stepNumber = stepNumber;
+            this.stepName = stepName;
+            this.message = message;
+            this.details = details;
+            this.consoleLine = consoleLine;
+        }
+    }
+
+    /** Events of one run dropped since the last report. */
+    private static final class Drops {
+        final DbTarget target;
+        final String runId, pipelineName, lastLogAt;
+        final long count;
+
+        Drops(DbTarget target, String runId, String pipelineName, String lastLogAt, long count) {
+            this.target = target;
+            this.runId = runId;
+            this.pipelineName = pipelineName;
+            this.lastLogAt = lastLogAt;
+            this.count = count;
+        }
+
+        Drops plus(Drops later) {
+            return new Drops(target, runId, pipelineName, later.lastLogAt, count + later.count);
+        }
+    }
+
+    /** Rows per INSERT; 8 parameters each stays well under SQL Server's 2100-parameter limit. */
+    private static final int ROWS_PER_INSERT = 200;
+    private static final long FLUSH_TIMEOUT_MS = 10_000;
+
+    private static final AsyncLogWriter INSTANCE = new AsyncLogWriter();
+
+    private final AtomicReferenceArray<Event> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    /** Sequence up to which events have been written (or given up on). */
+    private final AtomicLong written = new AtomicLong();
+    /** Unreported drops by RunId ("" for events outside a run). */
+    private final ConcurrentHashMap<String, Drops> dropped = new ConcurrentHashMap<>();
+    private final boolean block;
+    private final long intervalNanos;
+    private final Thread flusher;
+    private volatile boolean stopping;
+
+    private AsyncLogWriter() {
+        int capacity = Integer.highestOneBit(Math.max(2, PipelineConfig.getLogAsyncBufferSize()) - 1) << 1;
+        slots = new AtomicReferenceArray<>(capacity);
+        mask = capacity - 1;
+        block = "block".equals(PipelineConfig.getLogAsyncFullPolicy());
+        intervalNanos = TimeUnit.MILLISECONDS.toNanos(PipelineConfig.getLogAsyncFlushMillis());
+        flusher = new Thread(this::run, "pipeline-log-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    static AsyncLogWriter get() {
+        return INSTANCE;
+    }
+
+    void offer(Event e) {
+        while (true) {
+            long t = tail.get();
+            if (t - head.get() > mask) {
+                if (!block || stopping) {
+                    dropped.merge(e.runId != null ? e.runId : "",
+                        new Drops(e.target, e.runId, e.pipelineName, e.logAt, 1), Drops::plus);
+                    return;
+                }
+                LockSupport.unpark(flusher);
+                LockSupport.parkNanos(50_000);
+                continue;
+            }
+            if (tail.compareAndSet(t, t + 1)) {
+                slots.lazySet((int) (t & mask), e);
+                return;
+            }
+        }
+    }
+
+    /** Waits (up to 10 s) until every event offered before this call has been written. */
+    void flush() {
+        long target = tail.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_TIMEOUT_MS);
+        while (written.get() < target && System.nanoTime() < deadline) {
+            LockSupport.unpark(flusher);
+            LockSupport.parkNanos(1_000_000);
+        }
+    }
+
+    /** Writes every event offered so far (waiting up to 10 s), then stops the flusher. */
+    void shutdown() {
+        flush();
+        stopping = true;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(FLUSH_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Event> batch = new ArrayList<>();
+        while (true) {
+            long h = head.get();
+            Event e;
+            // A claimed slot may not be published yet; stop the batch there and pick it up next round.
+            while (batch.size() < ROWS_PER_INSERT * 5 && (e = slots.get((int) (h & mask))) != null) {
+                slots.lazySet((int) (h & mask), null);
+                batch.add(e);
+                h++;
+            }
+            head.lazySet(h);
+            if (batch.isEmpty() && dropped.isEmpty()) {
+                if (stopping) return;
+                LockSupport.parkNanos(intervalNanos);
+                continue;
+            }
+            write(batch);
+            written.set(h);
+            batch.clear();
+        }
+    }
+
+    private void write(List<Event> batch) {
+        for (String runId : dropped.keySet()) {
+            Drops d = dropped.remove(runId);
+            if (d == null) continue;
+            batch.add(new Event(d.target, d.runId, d.pipelineName, d.lastLogAt, "Warning", null, null,
+                d.count + " log events dropped because the log buffer was full", null, null));
+        }
+        Map<DbTarget, List<Event>> byTarget = new LinkedHashMap<>();
+        for (Event e : batch) {
+            if (e.consoleLine != null) System.out.println(e.consoleLine);
+            byTarget.computeIfAbsent(e.target, k -> new ArrayList<>()).add(e);
+        }
+        for (Map.Entry<DbTarget, List<Event>> entry : byTarget.entrySet()) {
+            List<Event> events = entry.getValue();
+            try (Connection c = entry.getKey().connect()) {
+                for (int from = 0; from < events.size(); from += ROWS_PER_INSERT) {
+                    insert(c, events.subList(from, Math.min(events.size(), from + ROWS_PER_INSERT)));
+                }
+            } catch (SQLException ex) {
+                System.err.println("PipelineLogger: could not write " + events.size() + " log rows: " + ex.getMessage());
+            }
+        }
+    }
+
+    private static void insert(Connection c, List<Event> events) throws SQLException {
+        StringBuilder sql = new StringBuilder(
+            "INSERT INTO dbo.PipelineLogs (RunId, PipelineName, LogAt, Level, StepNumber, StepName, Message, Details) VALUES ");
+        for (int i = 0; i < events.size(); i++) sql.append(i == 0 ? "" : ",").append("(?,?,?,?,?,?,?,?)");
+        try (PreparedStatement ps = c.prepareStatement(sql.toString())) {
+            int p = 1;
+            for (Event e : events) {
+                ps.setString(p++, e.runId);
+                ps.setString(p++, e.pipelineName);
+                ps.setString(p++, e.logAt);
+                ps.setString(p++, e.level != null ? e.level : "Info");
+                ps.setObject(p++, e.stepNumber);
+                ps.setString(p++, e.stepName);
+                ps.setString(p++, e.message);
+                ps.setString(p++, e.details);
+            }
+            ps.executeUpdate();
+        }
+    }
+}
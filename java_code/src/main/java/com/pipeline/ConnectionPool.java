@@ -0,0 +1,371 @@
+package com.pipeline;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pool of SQL Server connections, one pool per target (JDBC URL, user and password), so host/port/user
+ * overrides get their own pool. Borrowed connections are proxies: close() rolls back anything left
+ * uncommitted, restores auto-commit, closes statements the caller left open and returns the physical
+ * connection. Connections idle for more than a moment are validated on borrow; idle connections above
+ * the minimum are closed after DB_POOL_IDLE_TIMEOUT_SEC.
+ */
+public final class ConnectionPool {
+
+    /** A connection returned this recently is handed out again without a validation round trip. */
+    private static final long VALIDATION_BYPASS_MS = 500;
+    private static final int VALIDATION_TIMEOUT_SEC = 5;
+    private static final long EVICT_INTERVAL_SEC = 30;
+
+    private static final ConcurrentHashMap<String, ConnectionPool> POOLS = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService EVICTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "db-pool-evictor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        EVICTOR.scheduleWithFixedDelay(ConnectionPool::evictAll, EVICT_INTERVAL_SEC, EVICT_INTERVAL_SEC, TimeUnit.SECONDS);
+    }
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMs;
+    private final long maxWaitMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Deque<Physical> idle = new ArrayDeque<>();
+    private int total;
+    private int waiting;
+    private long created;
+    private long closed;
+    private long borrowed;
+    private long timeouts;
+
+    private ConnectionPool(String url, String user, String password) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = PipelineConfig.getDbPoolMinSize();
+        this.maxSize = Math.max(1, Math.max(minSize, PipelineConfig.getDbPoolMaxSize()));
+        this.idleTimeoutMs = PipelineConfig.getDbPoolIdleTimeoutSeconds() * 1000L;
+        this.maxWaitMs = PipelineConfig.getDbPoolMaxWaitMillis();
+    }
+
+    /** Borrows a connection for the target, waiting up to DB_POOL_MAX_WAIT_MS when the pool is full. */
+    static Connection getConnection(String url, String user, String password) throws SQLException {
+        String key = url + '\u0000' + user + '\u0000' + password;
+        return POOLS.computeIfAbsent(key, k -> new ConnectionPool(url, user, password)).borrow();
+    }
+
+    /** Per-target counters for monitoring (no passwords). */
+    public static List<Map<String, Object>> stats() {
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (ConnectionPool pool : POOLS.values()) out.add(pool.snapshot());
+        return out;
+    }
+
+    /**
+     * Stops the evictor and closes every idle connection; connections still borrowed are closed when
+     * they come back.
+     */
+    public static void shutdown() {
+        EVICTOR.shutdownNow();
+        for (ConnectionPool pool : POOLS.values()) pool.evict(true);
+        POOLS.clear();
+    }
+
+    private Connection borrow() throws SQLException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        while (true) {
+            Physical p = null;
+            boolean create = false;
+            lock.lock();
+            try {
+                while (true) {
+                    p = idle.pollFirst();
+                    if (p != null) break;
+                    if (total < maxSize) {
+                        total++;
+                        create = true;
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timeouts++;
+                        throw new SQLException("Timed out after " + maxWaitMs + " ms waiting for a database connection (pool size " + maxSize + ")");
+                    }
+                    waiting++;
+                    try {
+                        available.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a database connection", e);
+                    } finally {
+                        waiting--;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (create) {
+                try {
+                    p = new Physical(DriverManager.getConnection(url, user, password));
+                } catch (SQLException | RuntimeException e) {
+                    discarded(null);
+                    throw e;
+                }
+                lock.lock();
+                try {
+                    created++;
+                } finally {
+                    lock.unlock();
+                }
+            } else if (!isUsable(p)) {
+                discarded(p);
+                continue;
+            }
+            lock.lock();
+            try {
+                borrowed++;
+            } finally {
+                lock.unlock();
+            }
+            return p.lend(this);
+        }
+    }
+
+    private static boolean isUsable(Physical p) {
+        if (System.currentTimeMillis() - p.lastUsed < VALIDATION_BYPASS_MS) return true;
+        try {
+            return p.conn.isValid(VALIDATION_TIMEOUT_SEC);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /** Called by the proxy on close(): resets the connection and returns it, or drops it if it is broken. */
+    private void release(Physical p, boolean broken) {
+        if (!broken) {
+            try {
+                if (p.conn.isClosed()) {
+                    broken = true;
+                } else if (!p.conn.getAutoCommit()) {
+                    p.conn.rollback();
+                    p.conn.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                broken = true;
+            }
+        }
+        if (broken || POOLS.get(url + '\u0000' + user + '\u0000' + password) != this) {
+            discarded(p);
+            return;
+        }
+        p.lastUsed = System.currentTimeMillis();
+        lock.lock();
+        try {
+            idle.addFirst(p);
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void discarded(Physical p) {
+        if (p != null) {
+            try {
+                p.conn.close();
+            } catch (SQLException ignored) {}
+        }
+        lock.lock();
+        try {
+            total--;
+            if (p != null) closed++;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void evictAll() {
+        for (ConnectionPool pool : POOLS.values()) {
+            try {
+                pool.evict(false);
+            } catch (RuntimeException ignored) {}
+        }
+    }
+
+    /** Closes connections idle past the timeout (all idle ones when shutting down), keeping minSize open. */
+    private void evict(boolean all) {
+        List<Physical> expired = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            Iterator<Physical> it = idle.descendingIterator(); // least recently used first
+            while (it.hasNext() && (all || total - expired.size() > minSize)) {
+                Physical p = it.next();
+                if (!all && now - p.lastUsed < idleTimeoutMs) break;
+                it.remove();
+                expired.add(p);
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Physical p : expired) discarded(p);
+        if (!all) fillToMin();
+    }
+
+    private void fillToMin() {
+        while (true) {
+            lock.lock();
+            try {
+                if (total >= minSize) return;
+                total++;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                Physical p = new Physical(DriverManager.getConnection(url, user, password));
+                lock.lock();
+                try {
+                    created++;
+                } finally {
+                    lock.unlock();
+                }
+                release(p, false);
+            } catch (SQLException e) {
+                discarded(null);
+                return;
+            }
+        }
+    }
+
+    private Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            m.put("url", url);
+            m.put("user", user);
+            m.put("minSize", minSize);
+            m.put("maxSize", maxSize);
+            m.put("total", total);
+            m.put("idle", idle.size());
+            m.put("active", total - idle.size());
+            m.put("waiting", waiting);
+            m.put("created", created);
+            m.put("closed", closed);
+            m.put("borrowed", borrowed);
+            m.put("timeouts", timeouts);
+        } finally {
+            lock.unlock();
+        }
+        return m;
+    }
+
+    /** A physical connection and when it was last returned. */
+    private static final class Physical {
+        final Connection conn;
+        volatile long lastUsed;
+
+        Physical(Connection conn) {
+            this.conn = conn;
+        }
+
+        Connection lend(ConnectionPool pool) {
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new Lease(pool, this));
+        }
+    }
+
+    /** One borrow of a physical connection; everything but close() goes to the driver's connection. */
+    private static final class Lease implements InvocationHandler {
+        private final ConnectionPool pool;
+        private final Physical physical;
+        private final List<Statement> statements = new ArrayList<>();
+        private boolean closed;
+        private boolean broken;
+
+        Lease(ConnectionPool pool, Physical physical) {
+            this.pool = pool;
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        for (Statement st : statements) {
+                            try {
+                                st.close();
+                            } catch (SQLException ignored) {}
+                        }
+                        statements.clear();
+                        pool.release(physical, broken);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || physical.conn.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + physical.conn;
+                default:
+                    break;
+            }
+            if (closed) throw new SQLException("Connection is closed");
+            Object result;
+            try {
+                result = method.invoke(physical.conn, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException) {
+                    String state = ((SQLException) cause).getSQLState();
+                    if (state != null && state.startsWith("08")) broken = true;
+                }
+                throw cause;
+            }
+            if (result instanceof Statement) {
+                // Callers sometimes leave createStatement() results open; with pooling they would outlive the borrow.
+                if (statements.size() >= 64) statements.removeIf(Lease::isClosedQuietly);
+                statements.add((Statement) result);
+            }
+            return result;
+        }
+
+        private static boolean isClosedQuietly(Statement st) {
+            try {
+                return st.isClosed();
+            } catch (SQLException e) {
+                return true;
+            }
+        }
+    }
+}
@@ -8,7 +8,11 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 /**
  * SQL Server database access. Connection settings from environment or defaults.
@@ -22,6 +26,15 @@ public class Database {
     private static final String DEFAULT_DATABASE = "pipeline";
     private static final String DEFAULT_LANDING_DIR = "data/landing";
 
+    /**
+     * Version of sqlserver_schema.sql plus the migrations in {@link #migrate}. Bump it with every schema
+     * change so databases recorded at an older version are bootstrapped again.
+     */
+    static final int SCHEMA_VERSION = 8;
+
+    /** Schema bootstrap per target (host:port/database|user), shared by concurrent callers. */
+    private static final ConcurrentHashMap<String, CompletableFuture<Void>> SCHEMA_READY = new ConcurrentHashMap<>();
+
     private static String host;
     private static Integer port;
     private static String user;
@@ -99,7 +112,7 @@ public class Database {
         String url = buildJdbcUrl();
         String u = getUser();
         String p = getPassword();
-        return DriverManager.getConnection(url, u, p);
+        return open(url, u, p);
     }
 
     /** Get connection with optional overrides (null = use env/default). */
@@ -110,7 +123,13 @@ public class Database {
         String pass = (passwordOverride != null) ? passwordOverride : getPassword();
         String db = getDatabaseName();
         String url = "jdbc:sqlserver://" + h + ":" + p + ";databaseName=" + db + ";encrypt=true;trustServerCertificate=true";
-        return DriverManager.getConnection(url, u, pass);
+        return open(url, u, pass);
+    }
+
+    /** Pooled connection per target unless DB_POOL_ENABLED=false; close() returns it to the pool. */
+    private static Connection open(String url, String user, String pass) throws SQLException {
+        if (PipelineConfig.isDbPoolEnabled()) return ConnectionPool.getConnection(url, user, pass);
+        return DriverManager.getConnection(url, user, pass);
     }
 
     public static void initSchema() throws SQLException {
@@ -146,15 +165,85 @@ public class Database {
         return null;
     }
 
-    /** Init schema on DB identified by optional overrides (null = use env/default). */
+    /**
+     * Init schema on DB identified by optional overrides (null = use env/default). Runs once per target
+     * per process: later calls return at once, and concurrent callers wait for the one in progress.
+     * The bootstrap itself only replays the schema script when dbo.SchemaVersion is behind.
+     */
     public static void initSchema(String hostOverride, Integer portOverride, String userOverride, String passwordOverride) throws SQLException {
+        ensureSchema(hostOverride, portOverride, userOverride, passwordOverride, false);
+    }
+
+    /** Replays the schema script on the default target even if it is recorded as current (e.g. tables were dropped). */
+    public static void refreshSchema() throws SQLException {
+        ensureSchema(null, null, null, null, true);
+    }
+
+    private static void ensureSchema(String hostOverride, Integer portOverride, String userOverride, String passwordOverride,
+                                     boolean force) throws SQLException {
+        String h = (hostOverride != null && !hostOverride.trim().isEmpty()) ? hostOverride.trim() : getHost();
+        int p = (portOverride != null) ? portOverride : getPort();
+        String u = (userOverride != null && !userOverride.trim().isEmpty()) ? userOverride.trim() : getUser();
+        String key = h + ":" + p + "/" + getDatabaseName() + "|" + u;
+
+        CompletableFuture<Void> mine = new CompletableFuture<>();
+        CompletableFuture<Void> current = force ? null : SCHEMA_READY.putIfAbsent(key, mine);
+        if (current != null) {
+            try {
+                current.get();
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for schema initialization", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof SQLException) throw (SQLException) e.getCause();
+                throw new SQLException("Schema initialization failed", e.getCause());
+            }
+        }
+        if (force) SCHEMA_READY.put(key, mine);
+        try {
+            Connection c = (hostOverride != null || portOverride != null || userOverride != null || passwordOverride != null)
+                ? getConnection(hostOverride, portOverride, userOverride, passwordOverride)
+                : getConnection();
+            try {
+                if (force || schemaVersion(c) < SCHEMA_VERSION) migrate(c, force);
+            } finally {
+                c.close();
+            }
+            mine.complete(null);
+        } catch (SQLException | RuntimeException e) {
+            SCHEMA_READY.remove(key, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /** Highest version recorded in dbo.SchemaVersion, 0 before the first bootstrap. */
+    private static int schemaVersion(Connection c) throws SQLException {
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery(
+                 "IF OBJECT_ID('dbo.SchemaVersion', 'U') IS NULL SELECT 0 ELSE SELECT ISNULL(MAX(Version), 0) FROM dbo.SchemaVersion")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Runs the column migrations and the schema script, then records SCHEMA_VERSION. An application
+     * lock keeps several app instances from bootstrapping the same database at once; the bootstrap fails
+     * when the lock cannot be taken. The lock is owned by the session (the DDL runs in auto-commit), so
+     * if it cannot be released the connection is closed rather than returned to the pool holding it.
+     */
+    private static void migrate(Connection c, boolean force) throws SQLException {
         String sql = loadSchemaSql();
         if (sql == null) throw new SQLException("sqlserver_schema.sql not found on classpath (tried /sqlserver_schema.sql and sqlserver_schema.sql)");
 
-        Connection c = (hostOverride != null || portOverride != null || userOverride != null || passwordOverride != null)
-            ? getConnection(hostOverride, portOverride, userOverride, passwordOverride)
-            : getConnection();
+        try (Statement st = c.createStatement()) {
+            st.execute("DECLARE @r INT; "
+                + "EXEC @r = sp_getapplock @Resource = N'pipeline-schema', @LockMode = N'Exclusive', @LockOwner = N'Session', @LockTimeout = 60000; "
+                + "IF @r < 0 THROW 50001, N'Could not acquire the schema bootstrap lock', 1;");
+        }
         try {
+            if (!force && schemaVersion(c) >= SCHEMA_VERSION) return;
             // Migrate: add RunNumber if PipelineRuns exists but column doesn't
             try (ResultSet rs = c.createStatement().executeQuery(
                 "SELECT 1 FROM sys.tables WHERE name = 'PipelineRuns'")) {
@@ -208,8 +297,23 @@ public class Database {
                     if (!ex.getMessage().contains("already exists") && !ex.getMessage().contains("duplicate key")) throw ex;
                 }
             }
+            if (schemaVersion(c) < SCHEMA_VERSION) {
+                try (PreparedStatement ps = c.prepareStatement("INSERT INTO dbo.SchemaVersion (Version) VALUES (?)")) {
+                    ps.setInt(1, SCHEMA_VERSION);
+                    ps.executeUpdate();
+                }
+            }
         } finally {
-            c.close();
+            try (Statement st = c.createStatement()) {
+                st.execute("DECLARE @r INT; "
+                    + "EXEC @r = sp_releaseapplock @Resource = N'pipeline-schema', @LockOwner = N'Session'; "
+                    + "IF @r < 0 THROW 50002, N'Could not release the schema bootstrap lock', 1;");
+            } catch (SQLException e) {
+                // Closing the physical connection ends the session and its lock; the pool then discards it
+                try {
+                    c.unwrap(Connection.class).close();
+                } catch (SQLException ignored) {}
+            }
         }
     }
 }
@@ -0,0 +1,56 @@
+package com.pipeline;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Objects;
+
+/**
+ * Database a run works against: the optional host/port/user/password overrides a run was started
+ * with (null = env/default), so work done off the run's thread can open connections to the same DB.
+ */
+public final class DbTarget {
+
+    public static final DbTarget DEFAULT = new DbTarget(null, null, null, null);
+
+    private final String host;
+    private final Integer port;
+    private final String user;
+    private final String password;
+
+    private DbTarget(String host, Integer port, String user, String password) {
+        this.host = host;
+        this.port = port;
+        this.user = user;
+        this.password = password;
+    }
+
+    public static DbTarget of(String host, Integer port, String user, String password) {
+        if (host == null && port == null && user == null && password == null) return DEFAULT;
+        return new DbTarget(host, port, user, password);
+    }
+
+    public Connection connect() throws SQLException {
+        return this == DEFAULT ? Database.getConnection() : Database.getConnection(host, port, user, password);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DbTarget)) return false;
+        DbTarget t = (DbTarget) o;
+        return Objects.equals(host, t.host) && Objects.equals(port, t.port)
+            && Objects.equals(user, t.user) && Objects.equals(password, t.password);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(host, port, user, password);
+    }
+
+    /** Label for monitoring output; never includes the password. */
+    @Override
+    public String toString() {
+        if (this == DEFAULT) return "default";
+        return (host != null ? host : "default") + (port != null ? ":" + port : "") + (user != null ? " as " + user : "");
+    }
+}
@@ -0,0 +1,233 @@
+package com.pipeline;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+/**
+ * Pipeline tuning options. Values come from environment variables (or defaults), like {@link Database}.
+ */
+public class PipelineConfig {
+
+    /**
+     * PullStep CSV input: stream (buffered reader), mmap (memory-mapped bytes), auto (mmap above the size
+     * threshold) or parallel (memory-mapped, parsed in byte ranges across cores).
+     */
+    public static String getPullInputMode() {
+        return getString("PULL_INPUT_MODE", "stream").toLowerCase();
+    }
+
+    /** File size at which PULL_INPUT_MODE=auto switches to the memory-mapped reader. */
+    public static long getPullMmapThresholdBytes() {
+        return getInt("PULL_MMAP_THRESHOLD_MB", 64) * 1024L * 1024L;
+    }
+
+    /** Worker threads for PULL_INPUT_MODE=parallel. */
+    public static int getPullParallelism() {
+        return Math.max(1, getInt("PULL_PARALLELISM", Runtime.getRuntime().availableProcessors()));
+    }
+
+    /** Whether parallel parsing keeps file order when inserting (false = insert chunks as they finish). */
+    public static boolean isPullParallelOrdered() {
+        return getBoolean("PULL_PARALLEL_ORDERED", true);
+    }
+
+    /**
+     * How the steps write Landing_Orders, Staging_Orders and Staging_Orders_Transformed: batch (JDBC
+     * batched INSERTs) or bulk (SQL Server bulk copy; other drivers fall back to batch).
+     */
+    public static String getLoadMode() {
+        return getString("LOAD_MODE", "batch").toLowerCase();
+    }
+
+    /** Rows per bulk-copy round trip when LOAD_MODE=bulk. */
+    public static int getLoadBulkBatchSize() {
+        return Math.max(1, getInt("LOAD_BULK_BATCH_SIZE", 10000));
+    }
+
+    /**
+     * MigrateStep upsert strategy: row (one parameterized MERGE per row, batched) or set (one MERGE per
+     * chunk of staged rows, run entirely on the server).
+     */
+    public static String getMigrateMode() {
+        return getString("MIGRATE_MODE", "row").toLowerCase();
+    }
+
+    /** Staged rows per MERGE statement when MIGRATE_MODE=set. */
+    public static int getMigrateChunkRows() {
+        return Math.max(1, getInt("MIGRATE_CHUNK_ROWS", 50000));
+    }
+
+    /**
+     * Landing file deduplication: off (no hashing), record (store the file's SHA-256 on the run),
+     * scheduled (also skip scheduled runs whose file matches the last successful load) or all (skip
+     * manual runs too).
+     */
+    public static String getDedupPolicy() {
+        return getString("DEDUP_POLICY", "off").toLowerCase();
+    }
+
+    /**
+     * Rows between checkpoint commits inside a step (PIPELINE_MODE=steps and resumed runs). 0 keeps one
+     * transaction per step, so a failed step rolls back entirely and a resume starts it over.
+     */
+    public static int getCheckpointRows() {
+        return Math.max(0, getInt("CHECKPOINT_ROWS", 0));
+    }
+
+    /**
+     * Where Extract and Transform run: java (rows are read into the JVM and written back) or server (one
+     * stored procedure per step, rows stay in SQL Server).
+     */
+    public static String getStepExecution() {
+        return getString("STEP_EXECUTION", "java").toLowerCase();
+    }
+
+    /**
+     * How PipelineRunner runs a pipeline: steps (four steps one after another, each materialized in its
+     * table), pipelined (the same four steps overlapping, connected by bounded queues) or fused (one
+     * stream from the file into Target_Orders).
+     */
+    public static String getPipelineMode() {
+        return getString("PIPELINE_MODE", "steps").toLowerCase();
+    }
+
+    /** Fused mode staging tables: skip (not written) or audit (written on a background connection). */
+    public static String getFusedStaging() {
+        return getString("FUSED_STAGING", "skip").toLowerCase();
+    }
+
+    /** Row batches (of 2000) a pipelined stage may queue ahead of the next one. */
+    public static int getPipelineQueueBatches() {
+        return Math.max(1, getInt("PIPELINE_QUEUE_BATCHES", 4));
+    }
+
+    /** Whether Database.getConnection borrows from {@link ConnectionPool} (true) or opens a new connection each time. */
+    public static boolean isDbPoolEnabled() {
+        return getBoolean("DB_POOL_ENABLED", true);
+    }
+
+    /** Connections each pool keeps open even when idle. */
+    public static int getDbPoolMinSize() {
+        return Math.max(0, getInt("DB_POOL_MIN_SIZE", 0));
+    }
+
+    /** Most connections one pool (one DB target) opens at once. */
+    public static int getDbPoolMaxSize() {
+        return Math.max(1, getInt("DB_POOL_MAX_SIZE", 20));
+    }
+
+    /** Idle connections above the minimum are closed after this long. */
+    public static int getDbPoolIdleTimeoutSeconds() {
+        return Math.max(1, getInt("DB_POOL_IDLE_TIMEOUT_SEC", 300));
+    }
+
+    /** How long a borrower waits for a free connection when the pool is at its maximum. */
+    public static long getDbPoolMaxWaitMillis() {
+        return Math.max(0, getInt("DB_POOL_MAX_WAIT_MS", 30000));
+    }
+
+    /** PipelineLogger: sync (INSERT on the caller's connection) or async (ring buffer + background batch writer). */
+    public static String getLogMode() {
+        return getString("LOG_MODE", "sync").toLowerCase();
+    }
+
+    /** Async log events buffered before the full policy applies (rounded up to a power of two). */
+    public static int getLogAsyncBufferSize() {
+        return getInt("LOG_ASYNC_BUFFER", 8192);
+    }
+
+    /** Async log buffer full: drop (count and report dropped events) or block (caller waits for space). */
+    public static String getLogAsyncFullPolicy() {
+        return getString("LOG_ASYNC_FULL_POLICY", "drop").toLowerCase();
+    }
+
+    /** How often the async log flusher looks for new events when idle. */
+    public static int getLogAsyncFlushMillis() {
+        return Math.max(1, getInt("LOG_ASYNC_FLUSH_MS", 200));
+    }
+
+    /** How often StepProgress publishes changed row counts to StepRuns. */
+    public static int getProgressFlushMillis() {
+        return Math.max(50, getInt("PROGRESS_FLUSH_MS", 1000));
+    }
+
+    /** Cache run detail and run list responses in ApiServlet. */
+    public static boolean isRunCacheEnabled() {
+        return getBoolean("RUN_CACHE_ENABLED", true);
+    }
+
+    /** Run details kept in the response cache (least recently used are evicted). */
+    public static int getRunCacheMaxEntries() {
+        return Math.max(1, getInt("RUN_CACHE_MAX_ENTRIES", 1000));
+    }
+
+    /** How long cached responses for unfinished runs and run lists stay valid. Finished runs never expire. */
+    public static int getRunCacheTtlMillis() {
+        return Math.max(0, getInt("RUN_CACHE_TTL_MS", 2000));
+    }
+
+    /** Gzip API responses (JSON lists and logs) for clients that accept it. */
+    public static boolean isApiGzipEnabled() {
+        return getBoolean("API_GZIP", false);
+    }
+
+    /** Pipeline runs executing at the same time; further runs wait with status Queued. */
+    public static int getRunMaxConcurrent() {
+        return Math.max(1, getInt("RUN_MAX_CONCURRENT", 4));
+    }
+
+    /** Pipeline runs executing at the same time against one database. */
+    public static int getRunMaxPerTarget() {
+        return Math.max(1, getInt("RUN_MAX_PER_TARGET", 2));
+    }
+
+    /** Runs that may wait in the queue before new runs are refused. */
+    public static int getRunQueueCapacity() {
+        return Math.max(1, getInt("RUN_QUEUE_CAPACITY", 1000));
+    }
+
+    /** How often ScheduleRunner reloads all schedules from the database as a safety net for missed changes. */
+    public static int getScheduleReconcileSeconds() {
+        return Math.max(5, getInt("SCHEDULE_RECONCILE_SEC", 300));
+    }
+
+    /**
+     * Name of this node, recorded when it claims a schedule and on the runs it queues. It must survive a
+     * restart, so a node can recognise the queued runs it lost; defaults to the host name. Set it when
+     * several nodes share a host.
+     */
+    public static String getSchedulerNodeId() {
+        String def;
+        try {
+            def = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            def = "node";
+        }
+        return getString("SCHEDULER_NODE_ID", def);
+    }
+
+    /** How long a schedule claim holds before another node may take the occurrence over. */
+    public static int getScheduleClaimLeaseSeconds() {
+        return Math.max(10, getInt("SCHEDULE_CLAIM_LEASE_SEC", 300));
+    }
+
+    static String getString(String name, String def) {
+        String env = System.getenv(name);
+        return env != null && !env.trim().isEmpty() ? env.trim() : def;
+    }
+
+    static int getInt(String name, int def) {
+        String env = System.getenv(name);
+        if (env != null) {
+            try { return Integer.parseInt(env.trim()); } catch (NumberFormatException ignored) {}
+        }
+        return def;
+    }
+
+    static boolean getBoolean(String name, boolean def) {
+        String env = System.getenv(name);
+        if (env == null || env.trim().isEmpty()) return def;
+        String v = env.trim().toLowerCase();
+        return "true".equals(v) || "1".equals(v) || "yes".equals(v);
+    }
+}
@@ -6,19 +6,47 @@ import java.sql.SQLException;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class PipelineLogger {
 
     private static final ZoneId LOCAL_ZONE = ZoneId.systemDefault();
     private static final DateTimeFormatter LOCAL_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
 
+    /** DB each running pipeline logs to, for LOG_MODE=async (default target when not bound). */
+    private static final ConcurrentHashMap<String, DbTarget> TARGETS = new ConcurrentHashMap<>();
+
+    /**
+     * Writes a log row. With LOG_MODE=sync it is inserted on conn, inside the caller's transaction. With
+     * LOG_MODE=async it is queued and written by a background flusher on its own connection to the
+     * run's bound target, so it costs the caller no round trip and survives the caller's rollback.
+     */
     public static void log(Connection conn, String runId, String level, String message,
                            String pipelineName, Integer stepNumber, String stepName, String details) throws SQLException {
         Instant instant = Instant.now();
         String nowUtc = instant.toString();
         String nowLocal = instant.atZone(LOCAL_ZONE).format(LOCAL_FMT);
         String prefix = "Error".equals(level) ? "ERROR" : "Warning".equals(level) ? "WARN" : "INFO";
-        System.out.println(nowLocal + " " + prefix + (stepNumber != null ? " [Step " + stepNumber + "]" : "") + " " + message);
+        String consoleLine = nowLocal + " " + prefix + (stepNumber != null ? " [Step " + stepNumber + "]" : "") + " " + message;
+        if (RunEvents.hasListeners(runId)) {
+            Map<String, Object> e = new HashMap<>();
+            e.put("LogAt", nowUtc);
+            e.put("Level", level != null ? level : "Info");
+            e.put("StepNumber", stepNumber);
+            e.put("StepName", stepName);
+            e.put("Message", message);
+            e.put("Details", details);
+            RunEvents.publish(runId, "log", e);
+        }
+        if (isAsync()) {
+            DbTarget target = runId != null ? TARGETS.getOrDefault(runId, DbTarget.DEFAULT) : DbTarget.DEFAULT;
+            AsyncLogWriter.get().offer(new AsyncLogWriter.Event(target, runId, pipelineName, nowUtc, level, stepNumber,
+                stepName, message, details, consoleLine));
+            return;
+        }
+        System.out.println(consoleLine);
 
         String sql = "INSERT INTO dbo.PipelineLogs (RunId, PipelineName, LogAt, Level, StepNumber, StepName, Message, Details) VALUES (?,?,?,?,?,?,?,?)";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
@@ -33,4 +61,27 @@ public class PipelineLogger {
             ps.executeUpdate();
         }
     }
+
+    /** Routes a run's async log rows to its DB. PipelineRunner binds at run start and unbinds after the final flush. */
+    public static void bindTarget(String runId, DbTarget target) {
+        if (runId != null) TARGETS.put(runId, target);
+    }
+
+    public static void unbindTarget(String runId) {
+        if (runId != null) TARGETS.remove(runId);
+    }
+
+    /** Async mode: waits until every row logged so far is in dbo.PipelineLogs. No-op in sync mode. */
+    public static void flush() {
+        if (isAsync()) AsyncLogWriter.get().flush();
+    }
+
+    /** Async mode: writes the rows still buffered and stops the flusher thread. No-op in sync mode. */
+    public static void shutdown() {
+        if (isAsync()) AsyncLogWriter.get().shutdown();
+    }
+
+    private static boolean isAsync() {
+        return "async".equals(PipelineConfig.getLogMode());
+    }
 }
@@ -2,9 +2,13 @@ package com.pipeline;
 
 import com.pipeline.steps.PullStep;
 import com.pipeline.steps.ExtractStep;
+import com.pipeline.steps.FusedPipeline;
+import com.pipeline.steps.PipelinedSteps;
+import com.pipeline.steps.StepCheckpoint;
 import com.pipeline.steps.TransformStep;
 import com.pipeline.steps.MigrateStep;
 
+import java.io.IOException;
 import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -12,11 +16,11 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Callable;
 
 /**
  * Orchestrates the 4-step pipeline: Data Pull → Extract → Transform → Migrate.
@@ -25,78 +29,123 @@ public class PipelineRunner {
 
     private static final String PIPELINE_NAME = System.getenv("PIPELINE_NAME") != null ? System.getenv("PIPELINE_NAME") : "SamplePipeline";
     private static final String[] STEP_NAMES = { "Data Pull", "Extract (SP)", "Transform (SP)", "Migrate (SP)" };
-    private static final ExecutorService BACKGROUND = Executors.newCachedThreadPool(r -> {
-        Thread t = new Thread(r, "pipeline-worker");
-        t.setDaemon(true);
-        return t;
-    });
+    private static final RunQueue RUNS = new RunQueue();
+    /** Recorded in PipelineRuns.QueuedBy: the queue holding a Queued run lives only in this node's memory. */
+    private static final String NODE_ID = PipelineConfig.getSchedulerNodeId();
 
+    /** Work committed in the same transaction that creates a run, so neither happens without the other. */
     @FunctionalInterface
-    private interface StepRunner {
-        int run(Connection c, String runId, String csvPath, int stepNumber) throws Exception;
+    public interface RunCreation {
+        void created(Connection c, String runId) throws SQLException;
     }
 
-    private static final ConcurrentHashMap<String, Boolean> CANCELLED_RUNS = new ConcurrentHashMap<>();
+    @FunctionalInterface
+    private interface StepRunner {
+        int run(Connection c, String runId, String csvPath, int stepNumber, StepCheckpoint checkpoint) throws Exception;
+    }
 
-    /** Request cancellation of a running pipeline. Idempotent. */
+    /** Request cancellation of a queued or running pipeline. Idempotent. */
     public static void cancelRun(String runId) {
-        if (runId != null && !runId.isEmpty()) CANCELLED_RUNS.put(runId, Boolean.TRUE);
+        if (runId == null || runId.isEmpty()) return;
+        if (RUNS.remove(runId)) return; // never started
+        RunCancellation.request(runId);
+    }
+
+    /** Removes a run that timed out while Queued from this node's queue, if it is there. */
+    public static void dropQueuedRun(String runId) {
+        RUNS.remove(runId);
+    }
+
+    /**
+     * True while a worker of this process is executing the run, including one still unwinding after a
+     * cancel or a timeout mark. Such a run must not be resumed until it has returned.
+     */
+    public static boolean isExecuting(String runId) {
+        return RUNS.isExecuting(runId);
+    }
+
+    /** Runs queued or executing in this process. */
+    static int activeRuns() {
+        return RUNS.load();
+    }
+
+    /** Run queue depth, slot use and wait times (GET /api/admin/queue). */
+    public static Map<String, Object> queueStats() {
+        return RUNS.stats();
     }
 
     /** True if this run has been requested to cancel. */
     public static boolean isCancelled(String runId) {
-        return runId != null && CANCELLED_RUNS.containsKey(runId);
+        return RunCancellation.isRequested(runId);
     }
 
     private static final StepRunner[] STEPS = new StepRunner[] {
         PullStep::run,
-        (c, runId, csvPath, stepNum) -> ExtractStep.run(c, runId, stepNum),
-        (c, runId, csvPath, stepNum) -> TransformStep.run(c, runId, stepNum),
-        (c, runId, csvPath, stepNum) -> MigrateStep.run(c, runId, stepNum),
+        (c, runId, csvPath, stepNum, cp) -> ExtractStep.run(c, runId, stepNum, cp),
+        (c, runId, csvPath, stepNum, cp) -> TransformStep.run(c, runId, stepNum, cp),
+        (c, runId, csvPath, stepNum, cp) -> MigrateStep.run(c, runId, stepNum, cp),
     };
 
-    /** Creates run + 4 step rows and returns runId. Pipeline steps run in background. */
+    /** Table each step writes per run; Migrate upserts the shared target table instead. */
+    private static final String[] STEP_TABLES = { "dbo.Landing_Orders", "dbo.Staging_Orders", "dbo.Staging_Orders_Transformed", null };
+
+    /** Run statuses that can be resumed: the run ended without finishing its steps. */
+    private static final String RESUMABLE_STATUSES = "'Failed', 'Cancelled', 'Failed-TimeOut-6Hours'";
+
+    /** Creates run + 4 step rows and returns runId. Pipeline steps run in background once the run queue admits the run. */
     public static String startPipelineRun(String csvPath) throws SQLException {
         return startPipelineRun(csvPath, null, null, null, null);
     }
 
     /** Same as startPipelineRun(csvPath) but with optional DB connection overrides. */
     public static String startPipelineRun(String csvPath, String dbHost, Integer dbPort, String dbUser, String dbPassword) throws SQLException {
+        return startRun(csvPath, dbHost, dbPort, dbUser, dbPassword, RunQueue.PRIORITY_MANUAL, null);
+    }
+
+    /**
+     * Starts a run for a schedule; it queues behind manually triggered runs. onCreate runs in the
+     * transaction that inserts the run (ScheduleRunner advances the schedule there).
+     */
+    public static String startScheduledRun(String csvPath, RunCreation onCreate) throws SQLException {
+        return startRun(csvPath, null, null, null, null, RunQueue.PRIORITY_SCHEDULED, onCreate);
+    }
+
+    /** Creates the run as Queued and hands it to the run queue, which marks it Running when a slot frees up. */
+    private static String startRun(String csvPath, String dbHost, Integer dbPort, String dbUser, String dbPassword, int priority,
+                                   RunCreation onCreate) throws SQLException {
         Connection c = (dbHost != null || dbPort != null || dbUser != null || dbPassword != null)
             ? Database.getConnection(dbHost, dbPort, dbUser, dbPassword)
             : Database.getConnection();
         try {
             c.setAutoCommit(false);
             String runId = UUID.randomUUID().toString();
-            String now = Instant.now().toString();
-
-            int nextRunNumber = 1;
-            try (ResultSet rs = c.createStatement().executeQuery("SELECT COALESCE(MAX(RunNumber), 0) + 1 AS n FROM dbo.PipelineRuns")) {
-                if (rs.next()) nextRunNumber = rs.getInt("n");
-            }
 
+            // RunNumber comes from a sequence: no MAX() scan, and concurrent starts never collide on it
             try (PreparedStatement ps = c.prepareStatement(
-                "INSERT INTO dbo.PipelineRuns (RunId, RunNumber, PipelineName, ADFRunId, StartedAt, Status) VALUES (?,?,?,?,?,?)")) {
+                "INSERT INTO dbo.PipelineRuns (RunId, RunNumber, PipelineName, ADFRunId, Status, SourcePath, QueuedBy) VALUES (?, NEXT VALUE FOR dbo.PipelineRunNumbers, ?, ?, ?, ?, ?)")) {
                 ps.setString(1, runId);
-                ps.setInt(2, nextRunNumber);
-                ps.setString(3, PIPELINE_NAME);
-                ps.setString(4, "local-" + System.currentTimeMillis());
-                ps.setString(5, now);
-                ps.setString(6, "Running");
+                ps.setString(2, PIPELINE_NAME);
+                ps.setString(3, "local-" + System.currentTimeMillis());
+                ps.setString(4, "Queued");
+                ps.setString(5, csvPath);
+                ps.setString(6, NODE_ID);
                 ps.executeUpdate();
             }
 
             try (PreparedStatement ps = c.prepareStatement(
-                "INSERT INTO dbo.StepRuns (RunId, StepNumber, StepName, Status) VALUES (?,?,?,?)")) {
+                "INSERT INTO dbo.StepRuns (RunId, StepNumber, StepName, Status) VALUES (?,?,?,?),(?,?,?,?),(?,?,?,?),(?,?,?,?)")) {
+                int p = 1;
                 for (int i = 0; i < 4; i++) {
-                    ps.setString(1, runId);
-                    ps.setInt(2, i + 1);
-                    ps.setString(3, STEP_NAMES[i]);
-                    ps.setString(4, "Pending");
-                    ps.executeUpdate();
+                    ps.setString(p++, runId);
+                    ps.setInt(p++, i + 1);
+                    ps.setString(p++, STEP_NAMES[i]);
+                    ps.setString(p++, "Pending");
                 }
+                ps.executeUpdate();
             }
+            if (onCreate != null) onCreate.created(c, runId);
             c.commit();
+            RunCache.invalidate(runId);
 
             final String runIdFinal = runId;
             final String pathFinal = csvPath;
@@ -104,18 +153,123 @@ public class PipelineRunner {
             final Integer p = dbPort;
             final String u = dbUser;
             final String pw = dbPassword;
-            BACKGROUND.submit(() -> {
+            try {
+                RUNS.submit(runId, DbTarget.of(dbHost, dbPort, dbUser, dbPassword), priority, () -> {
+                    try {
+                        executePipelineSteps(runIdFinal, pathFinal, h, p, u, pw, false, priority == RunQueue.PRIORITY_SCHEDULED);
+                    } catch (Throwable e) {
+                        e.printStackTrace();
+                        logRunErrorAndMarkFailed(runIdFinal, e.getMessage(), e.toString(), h, p, u, pw);
+                    }
+                });
+            } catch (SQLException e) {
+                logRunErrorAndMarkFailed(runId, e.getMessage(), e.toString(), dbHost, dbPort, dbUser, dbPassword);
+                throw e;
+            }
+            return runId;
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Re-queues a Failed, Cancelled or timed-out run of the default database. Steps that succeeded are
+     * skipped and the first unfinished one continues from its checkpoint; the run goes through the
+     * step-by-step path whatever PIPELINE_MODE is, since that is the one that keeps per-step state.
+     * Returns false when the run is not (or no longer) in a resumable state, or an earlier worker of it
+     * is still executing here.
+     */
+    public static boolean resumeRun(String runId, String csvPath) throws SQLException {
+        if (isExecuting(runId)) return false;
+        try (Connection c = Database.getConnection()) {
+            c.setAutoCommit(false);
+            int updated;
+            try (PreparedStatement ps = c.prepareStatement(
+                "UPDATE dbo.PipelineRuns SET Status = 'Queued', FinishedAt = NULL, QueuedBy = ? WHERE RunId = ? AND Status IN (" + RESUMABLE_STATUSES + ")")) {
+                ps.setString(1, NODE_ID);
+                ps.setString(2, runId);
+                updated = ps.executeUpdate();
+            }
+            if (updated == 0) {
+                c.rollback();
+                return false;
+            }
+            try (PreparedStatement ps = c.prepareStatement(
+                "UPDATE dbo.StepRuns SET Status = 'Pending', StartedAt = NULL, FinishedAt = NULL, RowsAffected = NULL, ErrorMessage = NULL " +
+                "WHERE RunId = ? AND Status <> 'Success'")) {
+                ps.setString(1, runId);
+                ps.executeUpdate();
+            }
+            c.commit();
+        }
+        RunCache.invalidate(runId);
+        try {
+            RUNS.submit(runId, DbTarget.DEFAULT, RunQueue.PRIORITY_MANUAL, () -> {
                 try {
-                    executePipelineSteps(runIdFinal, pathFinal, h, p, u, pw);
+                    executePipelineSteps(runId, csvPath, null, null, null, null, true, false);
                 } catch (Throwable e) {
                     e.printStackTrace();
-                    logRunErrorAndMarkFailed(runIdFinal, e.getMessage(), e.toString(), h, p, u, pw);
+                    logRunErrorAndMarkFailed(runId, e.getMessage(), e.toString(), null, null, null, null);
                 }
             });
-            return runId;
-        } finally {
-            c.close();
+        } catch (SQLException e) {
+            logRunErrorAndMarkFailed(runId, e.getMessage(), e.toString(), null, null, null, null);
+            throw e;
         }
+        return true;
+    }
+
+    /**
+     * False when the run recorded a hash of its source file and the file's content has changed since,
+     * so a resume would skip the wrong rows. Runs without a recorded hash are not checked.
+     */
+    public static boolean isSourceUnchanged(String runId, String csvPath) throws SQLException {
+        try (Connection c = Database.getConnection()) {
+            String recorded = SourceFingerprint.recorded(c, runId);
+            if (recorded == null) return true;
+            try {
+                return recorded.equals(SourceFingerprint.of(c, csvPath).hash);
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Startup: runs this node left Queued when it stopped were lost with its in-memory queue. They are
+     * marked Failed (and can be resumed) in the default database; Queued runs of other targets, or of
+     * nodes that never come back, are caught by the 6-hour timeout.
+     */
+    public static void failOrphanedQueuedRuns() {
+        List<String> orphaned = new ArrayList<>();
+        try {
+            Database.initSchema();
+            try (Connection c = Database.getConnection()) {
+                c.setAutoCommit(false);
+                try (PreparedStatement ps = c.prepareStatement(
+                    "UPDATE dbo.PipelineRuns SET Status = 'Failed', FinishedAt = ? OUTPUT inserted.RunId WHERE Status = 'Queued' AND QueuedBy = ?")) {
+                    ps.setString(1, Instant.now().toString());
+                    ps.setString(2, NODE_ID);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) orphaned.add(rs.getString(1));
+                    }
+                }
+                for (String runId : orphaned) {
+                    PipelineLogger.log(c, runId, "Error", "Run was still queued when the server stopped; resume it to run it",
+                        PIPELINE_NAME, null, null, "QueuedBy: " + NODE_ID);
+                }
+                c.commit();
+            }
+        } catch (SQLException e) {
+            System.err.println("PipelineRunner: could not check for orphaned queued runs: " + e.getMessage());
+        }
+        for (String runId : orphaned) RunCache.invalidate(runId);
+        if (!orphaned.isEmpty()) PipelineLogger.flush();
+    }
+
+    /** True for run statuses {@link #resumeRun} accepts. */
+    public static boolean isResumable(String status) {
+        return status != null && RESUMABLE_STATUSES.contains("'" + status + "'");
     }
 
     public static void executePipelineSteps(String runId, String csvPath) {
@@ -123,9 +277,14 @@ public class PipelineRunner {
     }
 
     public static void executePipelineSteps(String runId, String csvPath, String dbHost, Integer dbPort, String dbUser, String dbPassword) {
+        executePipelineSteps(runId, csvPath, dbHost, dbPort, dbUser, dbPassword, false, false);
+    }
+
+    private static void executePipelineSteps(String runId, String csvPath, String dbHost, Integer dbPort, String dbUser, String dbPassword,
+                                             boolean resume, boolean scheduled) {
         StepProgress.setDbParams(dbHost, dbPort, dbUser, dbPassword);
+        PipelineLogger.bindTarget(runId, DbTarget.of(dbHost, dbPort, dbUser, dbPassword));
         try {
-            if (isCancelled(runId)) return;
             Connection conn = (dbHost != null || dbPort != null || dbUser != null || dbPassword != null)
                 ? Database.getConnection(dbHost, dbPort, dbUser, dbPassword)
                 : Database.getConnection();
@@ -136,13 +295,22 @@ public class PipelineRunner {
                     logRunErrorAndMarkFailed(runId, e.getMessage(), e.toString(), dbHost, dbPort, dbUser, dbPassword);
                     return;
                 }
+                if (!markRunStarted(conn, runId)) return; // cancelled or timed out while queued
                 boolean wasAutoCommit = conn.getAutoCommit();
                 conn.setAutoCommit(false);
                 // Step 0: run is initialized and visible; log so UI has an immediate entry
                 PipelineLogger.log(conn, runId, "Info", "Step 0: Run initialized", PIPELINE_NAME, 0, "Initialization", null);
                 conn.commit();
                 try {
-                    runPipeline(conn, runId, csvPath);
+                    if (!resume && csvPath != null && skipDuplicate(conn, runId, csvPath, scheduled)) return;
+                    String mode = resume ? "steps" : PipelineConfig.getPipelineMode();
+                    if ("fused".equals(mode)) {
+                        runFused(conn, runId, csvPath, dbHost, dbPort, dbUser, dbPassword);
+                    } else if ("pipelined".equals(mode)) {
+                        runPipelined(conn, runId, csvPath, dbHost, dbPort, dbUser, dbPassword);
+                    } else {
+                        runPipeline(conn, runId, csvPath, resume);
+                    }
                 } finally {
                     try {
                         conn.setAutoCommit(wasAutoCommit);
@@ -155,15 +323,50 @@ public class PipelineRunner {
             e.printStackTrace();
             logRunErrorAndMarkFailed(runId, e.getMessage(), e.toString(), dbHost, dbPort, dbUser, dbPassword);
         } finally {
-            CANCELLED_RUNS.remove(runId);
+            RunCancellation.clear(runId);
+            StepProgress.finish(runId);
             StepProgress.clearDbParams();
+            PipelineLogger.flush();
+            PipelineLogger.unbindTarget(runId);
+        }
+    }
+
+    /**
+     * DEDUP_POLICY: records the landing file's fingerprint on the run (unless off) and, when the policy
+     * covers this run and the last successful load of the database had the same content, finishes the run
+     * as Duplicate with every step Skipped. Returns true when the run was skipped.
+     */
+    private static boolean skipDuplicate(Connection c, String runId, String csvPath, boolean scheduled) throws SQLException {
+        String policy = PipelineConfig.getDedupPolicy();
+        if ("off".equals(policy)) return false;
+        SourceFingerprint source;
+        try {
+            source = SourceFingerprint.of(c, csvPath);
+        } catch (IOException e) {
+            return false; // Pull reports the missing or unreadable file
         }
+        source.record(c, runId);
+        c.commit();
+        Integer duplicateOf = "all".equals(policy) || ("scheduled".equals(policy) && scheduled) ? source.duplicateOf(c) : null;
+        if (duplicateOf == null) return false;
+
+        try (PreparedStatement ps = c.prepareStatement(
+            "UPDATE dbo.StepRuns SET Status = 'Skipped', FinishedAt = ?, RowsAffected = 0 WHERE RunId = ? AND Status = 'Pending'")) {
+            ps.setString(1, Instant.now().toString());
+            ps.setString(2, runId);
+            ps.executeUpdate();
+        }
+        PipelineLogger.log(c, runId, "Info", "Source file is identical to run #" + duplicateOf + "; pipeline skipped",
+            PIPELINE_NAME, null, null, "SHA-256: " + source.hash);
+        markRunFinished(c, runId, "Duplicate");
+        return true;
     }
 
     /** Write error to run logs and set run status to Failed. Uses best-effort connection (same DB params, then default). */
     private static void logRunErrorAndMarkFailed(String runId, String message, String details,
                                                  String dbHost, Integer dbPort, String dbUser, String dbPassword) {
         if (runId == null) return;
+        PipelineLogger.bindTarget(runId, DbTarget.of(dbHost, dbPort, dbUser, dbPassword));
         Connection c = null;
         try {
             c = (dbHost != null || dbPort != null || dbUser != null || dbPassword != null)
@@ -185,12 +388,15 @@ public class PipelineRunner {
             try {
                 if (c != null) c.close();
             } catch (SQLException ignored) {}
+            PipelineLogger.flush();
+            PipelineLogger.unbindTarget(runId);
         }
     }
 
-    private static void runPipeline(Connection c, String runId, String csvPath) throws SQLException {
+    /** Runs the steps one at a time. Steps already Success (a resumed run) are skipped. */
+    private static void runPipeline(Connection c, String runId, String csvPath, boolean resume) throws SQLException {
         PipelineLogger.log(c, runId, "Info",
-            "Pipeline started" + (csvPath != null ? " with file: " + Paths.get(csvPath).getFileName() : ""),
+            (resume ? "Pipeline resumed" : "Pipeline started") + (csvPath != null ? " with file: " + Paths.get(csvPath).getFileName() : ""),
             PIPELINE_NAME, null, null, null);
 
         List<StepRow> steps = loadSteps(c, runId);
@@ -204,24 +410,32 @@ public class PipelineRunner {
             for (int i = 0; i < 4; i++) {
                 if (isCancelled(runId)) {
                     PipelineLogger.log(c, runId, "Info", "Pipeline cancelled by user", PIPELINE_NAME, null, null, null);
-                    markFirstRunningStepFailed(c, runId, steps, "Cancelled");
+                    markRunningStepsFailed(c, runId, "Cancelled");
                     markRunFinished(c, runId, "Cancelled");
                     return;
                 }
                 StepRow step = steps.get(i);
-                updateStepRunning(c, step.stepRunId);
-                PipelineLogger.log(c, runId, "Info", "Step " + (i + 1) + " started", PIPELINE_NAME, i + 1, STEP_NAMES[i], null);
+                if ("Success".equals(step.status)) {
+                    lastRows = step.rowsAffected;
+                    continue;
+                }
+                StepCheckpoint checkpoint = StepCheckpoint.load(c, runId, i + 1);
+                updateStepRunning(c, runId, step);
+                PipelineLogger.log(c, runId, "Info", "Step " + (i + 1) + (checkpoint.isResumed() ? " resumed from checkpoint" : " started"),
+                    PIPELINE_NAME, i + 1, STEP_NAMES[i], null);
                 c.commit(); // commit so UI and logs show step as "Running" / "In Progress" immediately
 
-                int rows = STEPS[i].run(c, runId, csvPath, i + 1);
+                if (resume && !checkpoint.isResumed()) discardStepRows(c, runId, i);
+                int rows = STEPS[i].run(c, runId, csvPath, i + 1, checkpoint);
                 lastRows = rows;
                 c.commit();
 
-                updateStepSuccess(c, step.stepRunId, rows, null);
+                updateStepSuccess(c, runId, step, rows, null);
                 PipelineLogger.log(c, runId, "Info", STEP_NAMES[i] + " completed: " + rows + " rows",
                     PIPELINE_NAME, i + 1, STEP_NAMES[i], "RowsAffected: " + rows);
             }
 
+            StepCheckpoint.clear(c, runId);
             markRunFinished(c, runId, "Success");
             PipelineLogger.log(c, runId, "Info", "Pipeline completed successfully", PIPELINE_NAME, null, null, "Total rows migrated: " + lastRows);
 
@@ -229,22 +443,150 @@ public class PipelineRunner {
             try {
                 c.rollback();
             } catch (SQLException ignored) {}
-            PipelineLogger.log(c, runId, "Error", "Pipeline failed: " + e.getMessage(), PIPELINE_NAME, null, null, e.toString());
+            boolean cancelled = isCancelled(runId);
+            PipelineLogger.log(c, runId, cancelled ? "Info" : "Error",
+                cancelled ? "Pipeline cancelled by user" : "Pipeline failed: " + e.getMessage(), PIPELINE_NAME, null, null, e.toString());
 
-            markFirstRunningStepFailed(c, runId, steps, e.getMessage());
-            markRunFinished(c, runId, "Failed");
+            markRunningStepsFailed(c, runId, cancelled ? "Cancelled" : e.getMessage());
+            markRunFinished(c, runId, cancelled ? "Cancelled" : "Failed");
         }
     }
 
+    /**
+     * PIPELINE_MODE=fused: all four steps run as one stream, so they start and finish together. Each
+     * StepRuns row still gets its own row count; on failure every running step is marked failed.
+     */
+    private static void runFused(Connection c, String runId, String csvPath,
+                                 String dbHost, Integer dbPort, String dbUser, String dbPassword) throws SQLException {
+        PipelineLogger.log(c, runId, "Info",
+            "Pipeline started (fused)" + (csvPath != null ? " with file: " + Paths.get(csvPath).getFileName() : ""),
+            PIPELINE_NAME, null, null, null);
+
+        List<StepRow> steps = loadSteps(c, runId);
+        if (steps.size() != 4) {
+            PipelineLogger.log(c, runId, "Error", "Expected 4 step rows, got " + steps.size(), PIPELINE_NAME, null, null, null);
+            return;
+        }
+        if (isCancelled(runId)) {
+            PipelineLogger.log(c, runId, "Info", "Pipeline cancelled by user", PIPELINE_NAME, null, null, null);
+            markRunFinished(c, runId, "Cancelled");
+            return;
+        }
+        Callable<Connection> audit = "audit".equals(PipelineConfig.getFusedStaging())
+            ? connector(dbHost, dbPort, dbUser, dbPassword)
+            : null;
+
+        try {
+            for (int i = 0; i < 4; i++) {
+                updateStepRunning(c, runId, steps.get(i));
+                PipelineLogger.log(c, runId, "Info", "Step " + (i + 1) + " started", PIPELINE_NAME, i + 1, STEP_NAMES[i], null);
+            }
+            c.commit();
+
+            int[] rows = FusedPipeline.run(c, runId, csvPath, audit);
+            c.commit();
+
+            for (int i = 0; i < 4; i++) {
+                updateStepSuccess(c, runId, steps.get(i), rows[i], null);
+                PipelineLogger.log(c, runId, "Info", STEP_NAMES[i] + " completed: " + rows[i] + " rows",
+                    PIPELINE_NAME, i + 1, STEP_NAMES[i], "RowsAffected: " + rows[i]);
+            }
+            markRunFinished(c, runId, "Success");
+            PipelineLogger.log(c, runId, "Info", "Pipeline completed successfully", PIPELINE_NAME, null, null, "Total rows migrated: " + rows[3]);
+
+        } catch (Exception e) {
+            try {
+                c.rollback();
+            } catch (SQLException ignored) {}
+            boolean cancelled = isCancelled(runId);
+            PipelineLogger.log(c, runId, cancelled ? "Info" : "Error",
+                cancelled ? "Pipeline cancelled by user" : "Pipeline failed: " + e.getMessage(), PIPELINE_NAME, null, null, e.toString());
+
+            markRunningStepsFailed(c, runId, cancelled ? "Cancelled" : e.getMessage());
+            markRunFinished(c, runId, cancelled ? "Cancelled" : "Failed");
+        }
+    }
+
+    /**
+     * PIPELINE_MODE=pipelined: the four steps run at once on their own connections, each feeding the
+     * next through a bounded queue. Steps are marked Success as they commit, which happens in order.
+     */
+    private static void runPipelined(Connection c, String runId, String csvPath,
+                                     String dbHost, Integer dbPort, String dbUser, String dbPassword) throws SQLException {
+        PipelineLogger.log(c, runId, "Info",
+            "Pipeline started (pipelined)" + (csvPath != null ? " with file: " + Paths.get(csvPath).getFileName() : ""),
+            PIPELINE_NAME, null, null, null);
+
+        List<StepRow> steps = loadSteps(c, runId);
+        if (steps.size() != 4) {
+            PipelineLogger.log(c, runId, "Error", "Expected 4 step rows, got " + steps.size(), PIPELINE_NAME, null, null, null);
+            return;
+        }
+        if (isCancelled(runId)) {
+            PipelineLogger.log(c, runId, "Info", "Pipeline cancelled by user", PIPELINE_NAME, null, null, null);
+            markRunFinished(c, runId, "Cancelled");
+            return;
+        }
+        for (int i = 0; i < 4; i++) {
+            updateStepRunning(c, runId, steps.get(i));
+            PipelineLogger.log(c, runId, "Info", "Step " + (i + 1) + " started", PIPELINE_NAME, i + 1, STEP_NAMES[i], null);
+        }
+        c.commit();
+
+        int lastRows = 0;
+        try (PipelinedSteps stages = PipelinedSteps.start(runId, csvPath, connector(dbHost, dbPort, dbUser, dbPassword), () -> isCancelled(runId))) {
+            for (int i = 0; i < 4; i++) {
+                int rows = stages.await(i + 1);
+                lastRows = rows;
+                updateStepSuccess(c, runId, steps.get(i), rows, null);
+                PipelineLogger.log(c, runId, "Info", STEP_NAMES[i] + " completed: " + rows + " rows",
+                    PIPELINE_NAME, i + 1, STEP_NAMES[i], "RowsAffected: " + rows);
+                c.commit();
+            }
+        } catch (Exception e) {
+            try {
+                c.rollback();
+            } catch (SQLException ignored) {}
+            boolean cancelled = isCancelled(runId);
+            PipelineLogger.log(c, runId, cancelled ? "Info" : "Error",
+                cancelled ? "Pipeline cancelled by user" : "Pipeline failed: " + e.getMessage(), PIPELINE_NAME, null, null, e.toString());
+            markRunningStepsFailed(c, runId, cancelled ? "Cancelled" : e.getMessage());
+            markRunFinished(c, runId, cancelled ? "Cancelled" : "Failed");
+            return;
+        }
+        markRunFinished(c, runId, "Success");
+        PipelineLogger.log(c, runId, "Info", "Pipeline completed successfully", PIPELINE_NAME, null, null, "Total rows migrated: " + lastRows);
+    }
+
+    /**
+     * Deletes rows a step without a checkpoint wrote for the run in an earlier attempt: a fused run's
+     * audit copy or a pipelined stage that committed are not recorded as checkpoints. Part of the step's
+     * transaction.
+     */
+    private static void discardStepRows(Connection c, String runId, int stepIndex) throws SQLException {
+        if (STEP_TABLES[stepIndex] == null) return;
+        try (PreparedStatement ps = c.prepareStatement("DELETE FROM " + STEP_TABLES[stepIndex] + " WHERE RunId = ?")) {
+            ps.setString(1, runId);
+            ps.executeUpdate();
+        }
+    }
+
+    /** Opens a new connection to the run's database (same overrides as the run, else env/default). */
+    private static Callable<Connection> connector(String dbHost, Integer dbPort, String dbUser, String dbPassword) {
+        return DbTarget.of(dbHost, dbPort, dbUser, dbPassword)::connect;
+    }
+
     private static List<StepRow> loadSteps(Connection c, String runId) throws SQLException {
         List<StepRow> steps = new ArrayList<>();
-        try (PreparedStatement ps = c.prepareStatement("SELECT StepRunId, StepNumber FROM dbo.StepRuns WHERE RunId = ? ORDER BY StepNumber")) {
+        try (PreparedStatement ps = c.prepareStatement("SELECT StepRunId, StepNumber, Status, RowsAffected FROM dbo.StepRuns WHERE RunId = ? ORDER BY StepNumber")) {
             ps.setString(1, runId);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     StepRow row = new StepRow();
                     row.stepRunId = rs.getLong("StepRunId");
                     row.stepNumber = rs.getInt("StepNumber");
+                    row.status = rs.getString("Status");
+                    row.rowsAffected = rs.getInt("RowsAffected");
                     steps.add(row);
                 }
             }
@@ -252,54 +594,136 @@ public class PipelineRunner {
         return steps;
     }
 
-    private static void markFirstRunningStepFailed(Connection c, String runId, List<StepRow> steps, String errorMessage) {
-        for (StepRow step : steps) {
-            try (ResultSet r = c.createStatement().executeQuery("SELECT Status FROM dbo.StepRuns WHERE StepRunId = " + step.stepRunId)) {
-                if (r.next() && "Running".equals(r.getString("Status"))) {
-                    try {
-                        updateStepSuccess(c, step.stepRunId, 0, errorMessage);
-                        PipelineLogger.log(c, runId, "Error", "Step " + step.stepNumber + " failed", PIPELINE_NAME, step.stepNumber, STEP_NAMES[step.stepNumber - 1], errorMessage);
-                    } catch (SQLException ignored) {}
-                    break;
-                }
+    /**
+     * Marks every step of the run that is still Running as Failed, in one UPDATE: one step in steps mode,
+     * all four in fused and pipelined mode. Commits before invalidating the cache. Best-effort; the run
+     * is marked finished either way.
+     */
+    private static void markRunningStepsFailed(Connection c, String runId, String errorMessage) {
+        String now = Instant.now().toString();
+        List<Integer> failed = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement(
+            "UPDATE dbo.StepRuns SET Status = 'Failed', FinishedAt = ?, RowsAffected = 0, ErrorMessage = ? " +
+            "OUTPUT inserted.StepNumber WHERE RunId = ? AND Status = 'Running'")) {
+            ps.setString(1, now);
+            ps.setString(2, errorMessage);
+            ps.setString(3, runId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) failed.add(rs.getInt(1));
+            }
+            if (!c.getAutoCommit()) c.commit();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return;
+        }
+        RunCache.invalidate(runId);
+        failed.sort(null);
+        for (int stepNumber : failed) {
+            try {
+                PipelineLogger.log(c, runId, "Error", "Step " + stepNumber + " failed", PIPELINE_NAME, stepNumber, STEP_NAMES[stepNumber - 1], errorMessage);
             } catch (SQLException ignored) {}
+            if (RunEvents.hasListeners(runId)) {
+                Map<String, Object> e = new HashMap<>();
+                e.put("StepNumber", stepNumber);
+                e.put("Status", "Failed");
+                e.put("FinishedAt", now);
+                e.put("RowsAffected", 0);
+                e.put("ErrorMessage", errorMessage);
+                RunEvents.publish(runId, "step", e);
+            }
+        }
+    }
+
+    /** Queued -> Running when the run queue admits the run. False when the run is no longer waiting to start. */
+    private static boolean markRunStarted(Connection c, String runId) throws SQLException {
+        int updated;
+        try (PreparedStatement ps = c.prepareStatement(
+            "UPDATE dbo.PipelineRuns SET Status = 'Running', StartedAt = ? WHERE RunId = ? AND Status IN ('Queued', 'Running')")) {
+            ps.setString(1, Instant.now().toString());
+            ps.setString(2, runId);
+            updated = ps.executeUpdate();
         }
+        if (!c.getAutoCommit()) c.commit();
+        RunCache.invalidate(runId);
+        return updated > 0;
     }
 
+    /**
+     * Queued/Running -> status. A run already Cancelled by the user or marked timed out keeps that
+     * status (and is not announced again), so a worker that is still unwinding cannot overwrite it.
+     */
     private static void markRunFinished(Connection c, String runId, String status) throws SQLException {
-        try (PreparedStatement ps = c.prepareStatement("UPDATE dbo.PipelineRuns SET Status = ?, FinishedAt = ? WHERE RunId = ?")) {
+        String now = Instant.now().toString();
+        int updated;
+        try (PreparedStatement ps = c.prepareStatement(
+            "UPDATE dbo.PipelineRuns SET Status = ?, FinishedAt = ? WHERE RunId = ? AND Status IN ('Queued', 'Running')")) {
             ps.setString(1, status);
-            ps.setString(2, Instant.now().toString());
+            ps.setString(2, now);
             ps.setString(3, runId);
-            ps.executeUpdate();
+            updated = ps.executeUpdate();
         }
         c.commit();
+        RunCache.invalidate(runId);
+        if (updated > 0 && RunEvents.hasListeners(runId)) {
+            Map<String, Object> e = new HashMap<>();
+            e.put("Status", status);
+            e.put("FinishedAt", now);
+            RunEvents.publish(runId, "run", e);
+        }
     }
 
-    private static void updateStepRunning(Connection c, long stepRunId) throws SQLException {
+    /** Pending -> Running. Commits first, so the cache and event listeners never see an uncommitted status. */
+    private static void updateStepRunning(Connection c, String runId, StepRow step) throws SQLException {
         String now = Instant.now().toString();
-        try (PreparedStatement ps = c.prepareStatement("UPDATE dbo.StepRuns SET Status = ?, StartedAt = ? WHERE StepRunId = ?")) {
+        int updated;
+        try (PreparedStatement ps = c.prepareStatement("UPDATE dbo.StepRuns SET Status = ?, StartedAt = ? WHERE StepRunId = ? AND Status = 'Pending'")) {
             ps.setString(1, "Running");
             ps.setString(2, now);
-            ps.setLong(3, stepRunId);
-            ps.executeUpdate();
+            ps.setLong(3, step.stepRunId);
+            updated = ps.executeUpdate();
+        }
+        if (!c.getAutoCommit()) c.commit();
+        RunCache.invalidate(runId);
+        if (updated > 0 && RunEvents.hasListeners(runId)) {
+            Map<String, Object> e = new HashMap<>();
+            e.put("StepNumber", step.stepNumber);
+            e.put("Status", "Running");
+            e.put("StartedAt", now);
+            RunEvents.publish(runId, "step", e);
         }
     }
 
-    private static void updateStepSuccess(Connection c, long stepRunId, int rowsAffected, String errorMessage) throws SQLException {
+    /** Running -> Success, or Failed when errorMessage is set. Commits like {@link #updateStepRunning}. */
+    private static void updateStepSuccess(Connection c, String runId, StepRow step, int rowsAffected, String errorMessage) throws SQLException {
         String now = Instant.now().toString();
-        try (PreparedStatement ps = c.prepareStatement("UPDATE dbo.StepRuns SET Status = ?, FinishedAt = ?, RowsAffected = ?, ErrorMessage = ? WHERE StepRunId = ?")) {
-            ps.setString(1, errorMessage != null ? "Failed" : "Success");
+        String status = errorMessage != null ? "Failed" : "Success";
+        int updated;
+        try (PreparedStatement ps = c.prepareStatement(
+            "UPDATE dbo.StepRuns SET Status = ?, FinishedAt = ?, RowsAffected = ?, ErrorMessage = ? WHERE StepRunId = ? AND Status = 'Running'")) {
+            ps.setString(1, status);
             ps.setString(2, now);
             ps.setInt(3, rowsAffected);
             ps.setString(4, errorMessage);
-            ps.setLong(5, stepRunId);
-            ps.executeUpdate();
+            ps.setLong(5, step.stepRunId);
+            updated = ps.executeUpdate();
+        }
+        if (!c.getAutoCommit()) c.commit();
+        RunCache.invalidate(runId);
+        if (updated > 0 && RunEvents.hasListeners(runId)) {
+            Map<String, Object> e = new HashMap<>();
+            e.put("StepNumber", step.stepNumber);
+            e.put("Status", status);
+            e.put("FinishedAt", now);
+            e.put("RowsAffected", rowsAffected);
+            e.put("ErrorMessage", errorMessage);
+            RunEvents.publish(runId, "step", e);
         }
     }
 
     static class StepRow {
         long stepRunId;
         int stepNumber;
+        String status;
+        int rowsAffected;
     }
 }
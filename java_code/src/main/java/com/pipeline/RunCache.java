@@ -0,0 +1,123 @@
+package com.pipeline;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache of the API's run detail and run list responses. A run that succeeded (or was
+ * skipped as a duplicate) never changes, so its entry stays until the least recently used entries are
+ * evicted; entries of other runs and run lists expire after RUN_CACHE_TTL_MS. Failed and cancelled runs
+ * count as changing: a resume, possibly on another node, turns them back into Queued. PipelineRunner
+ * invalidates a run, and every cached list, whenever it creates a run or changes a run or step status.
+ * Each entry carries an ETag for conditional GETs.
+ */
+public final class RunCache {
+
+    /** A cached response body and its ETag. */
+    public static final class Cached {
+        public final String body;
+        public final String etag;
+        final long expiresAt;
+
+        Cached(String body, long expiresAt) {
+            this.body = body;
+            this.etag = etag(body);
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final int MAX_LISTS = 64;
+    private static final boolean ENABLED = PipelineConfig.isRunCacheEnabled();
+    private static final long TTL_MS = PipelineConfig.getRunCacheTtlMillis();
+
+    private static final Map<String, Cached> RUNS = lru(PipelineConfig.getRunCacheMaxEntries());
+    private static final Map<String, Cached> LISTS = lru(MAX_LISTS);
+    /** Bumped by every invalidation; a fill that started before one is not stored. */
+    private static final AtomicLong GENERATION = new AtomicLong();
+
+    private RunCache() {}
+
+    /** Read before querying and pass to the put call, so a fill racing an invalidation is dropped. */
+    public static long generation() {
+        return GENERATION.get();
+    }
+
+    public static Cached getRun(String runId) {
+        return get(RUNS, runId);
+    }
+
+    /** Caches a run's detail; final runs never expire. Returns the entry to serve either way. */
+    public static Cached putRun(String runId, String body, boolean isFinal, long generation) {
+        return put(RUNS, runId, new Cached(body, isFinal ? Long.MAX_VALUE : System.currentTimeMillis() + TTL_MS), generation);
+    }
+
+    public static Cached getList(String query) {
+        return get(LISTS, query);
+    }
+
+    public static Cached putList(String query, String body, long generation) {
+        return put(LISTS, query, new Cached(body, System.currentTimeMillis() + TTL_MS), generation);
+    }
+
+    /** Drops a run's detail and every run list. Call after committing a change to the run or its steps. */
+    public static void invalidate(String runId) {
+        GENERATION.incrementAndGet();
+        synchronized (RunCache.class) {
+            if (runId != null) RUNS.remove(runId);
+            LISTS.clear();
+        }
+    }
+
+    /**
+     * Whether a run in this status can no longer change, even on another node: Success or Duplicate.
+     * Failed, Cancelled and timed-out runs can be resumed.
+     */
+    public static boolean isFinal(Object status) {
+        return "Success".equals(status) || "Duplicate".equals(status);
+    }
+
+    private static Cached get(Map<String, Cached> map, String key) {
+        if (!ENABLED) return null;
+        synchronized (RunCache.class) {
+            Cached e = map.get(key);
+            if (e == null) return null;
+            if (e.expiresAt < System.currentTimeMillis()) {
+                map.remove(key);
+                return null;
+            }
+            return e;
+        }
+    }
+
+    private static Cached put(Map<String, Cached> map, String key, Cached e, long generation) {
+        if (!ENABLED) return e;
+        synchronized (RunCache.class) {
+            if (GENERATION.get() == generation) map.put(key, e);
+        }
+        return e;
+    }
+
+    private static Map<String, Cached> lru(int maxEntries) {
+        return new LinkedHashMap<String, Cached>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    private static String etag(String body) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder("\"");
+            for (int i = 0; i < 12; i++) sb.append(String.format("%02x", hash[i]));
+            return sb.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            return "\"" + Integer.toHexString(body.hashCode()) + "-" + body.length() + "\"";
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.pipeline;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cooperative cancellation of pipeline runs. Steps call {@link #check} at every batch boundary and
+ * register their long-running statements with {@link #track}; a cancel request flags the run and
+ * calls Statement.cancel() on those statements, so a step stops within one batch and rolls back
+ * instead of finishing doomed work.
+ */
+public final class RunCancellation {
+
+    /** Thrown at a batch boundary of a cancelled run. */
+    public static final class CancelledException extends SQLException {
+        private static final long serialVersionUID = 1L;
+
+        CancelledException() {
+            super("Pipeline cancelled by user", "HY008");
+        }
+    }
+
+    private static final Set<String> CANCELLED = ConcurrentHashMap.newKeySet();
+    private static final ConcurrentHashMap<String, Set<Statement>> STATEMENTS = new ConcurrentHashMap<>();
+
+    private RunCancellation() {}
+
+    /** Flags the run and cancels any statement it is executing. Idempotent. */
+    static void request(String runId) {
+        CANCELLED.add(runId);
+        Set<Statement> active = STATEMENTS.get(runId);
+        if (active == null) return;
+        for (Statement st : active) {
+            try {
+                st.cancel();
+            } catch (SQLException ignored) {
+                // Closed or finished already
+            }
+        }
+    }
+
+    public static boolean isRequested(String runId) {
+        return runId != null && CANCELLED.contains(runId);
+    }
+
+    /** Throws when the run has been cancelled. A null runId (untracked work) never is. */
+    public static void check(String runId) throws SQLException {
+        if (isRequested(runId)) throw new CancelledException();
+    }
+
+    /** Registers a statement to be cancelled with the run; returns it for chaining. */
+    public static <S extends Statement> S track(String runId, S statement) {
+        if (runId != null) STATEMENTS.computeIfAbsent(runId, k -> ConcurrentHashMap.newKeySet()).add(statement);
+        return statement;
+    }
+
+    /** Forgets the run's flag and statements. Call when the run ends. */
+    static void clear(String runId) {
+        CANCELLED.remove(runId);
+        STATEMENTS.remove(runId);
+    }
+}
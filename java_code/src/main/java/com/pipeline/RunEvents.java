@@ -0,0 +1,52 @@
+package com.pipeline;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process bus of live run events for watchers such as the SSE endpoint. PipelineRunner publishes
+ * step status changes ("step") and the run's end ("run"), StepProgress row counts ("progress") and
+ * PipelineLogger log lines ("log"). Publishing to a run nobody watches is a single map lookup, and
+ * listeners must not block: they are called on the pipeline's own threads.
+ */
+public final class RunEvents {
+
+    /** Receives events for one run; must hand them off without blocking. */
+    public interface Listener {
+        void onEvent(String type, Map<String, Object> data);
+    }
+
+    private static final ConcurrentHashMap<String, List<Listener>> LISTENERS = new ConcurrentHashMap<>();
+
+    private RunEvents() {}
+
+    public static void subscribe(String runId, Listener listener) {
+        LISTENERS.computeIfAbsent(runId, k -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    public static void unsubscribe(String runId, Listener listener) {
+        LISTENERS.computeIfPresent(runId, (k, list) -> {
+            list.remove(listener);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    /** Lets publishers skip building an event nobody will see. */
+    public static boolean hasListeners(String runId) {
+        return runId != null && LISTENERS.containsKey(runId);
+    }
+
+    public static void publish(String runId, String type, Map<String, Object> data) {
+        List<Listener> listeners = runId != null ? LISTENERS.get(runId) : null;
+        if (listeners == null) return;
+        for (Listener l : listeners) {
+            try {
+                l.onEvent(type, data);
+            } catch (RuntimeException ignored) {
+                // A broken watcher must not fail the pipeline
+            }
+        }
+    }
+}
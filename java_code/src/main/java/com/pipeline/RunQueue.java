@@ -0,0 +1,172 @@
+package com.pipeline;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Admission control for pipeline runs. At most RUN_MAX_CONCURRENT runs execute at once, and at most
+ * RUN_MAX_PER_TARGET against one database; the rest wait here (status Queued) in priority order,
+ * manual triggers ahead of scheduled ones and oldest first within a priority. Up to
+ * RUN_QUEUE_CAPACITY runs may wait; past that new runs are refused. The per-target limit is lowered
+ * further when DB_POOL_MAX_SIZE could not give every admitted run the connections its PIPELINE_MODE
+ * holds, so runs wait here rather than on the pool.
+ */
+final class RunQueue {
+
+    static final int PRIORITY_MANUAL = 0;
+    static final int PRIORITY_SCHEDULED = 1;
+
+    /** A run waiting for, or holding, an execution slot. */
+    private static final class Job implements Comparable<Job> {
+        final String runId;
+        final DbTarget target;
+        final int priority;
+        final long seq;
+        final long queuedAt = System.currentTimeMillis();
+        final Runnable body;
+
+        Job(String runId, DbTarget target, int priority, long seq, Runnable body) {
+            this.runId = runId;
+            this.target = target;
+            this.priority = priority;
+            this.seq = seq;
+            this.body = body;
+        }
+
+        @Override
+        public int compareTo(Job o) {
+            return priority != o.priority ? Integer.compare(priority, o.priority) : Long.compare(seq, o.seq);
+        }
+    }
+
+    private final ExecutorService workers = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "pipeline-worker");
+        t.setDaemon(true);
+        return t;
+    });
+    private final int maxConcurrent = PipelineConfig.getRunMaxConcurrent();
+    private final int maxPerTarget = Math.min(PipelineConfig.getRunMaxPerTarget(),
+        Math.max(1, PipelineConfig.getDbPoolMaxSize() / connectionsPerRun()));
+    private final int capacity = PipelineConfig.getRunQueueCapacity();
+
+    private final PriorityQueue<Job> queued = new PriorityQueue<>();
+    private final Map<DbTarget, Integer> runningByTarget = new HashMap<>();
+    /** RunIds whose body is executing in this process, from dispatch until it returns. */
+    private final Set<String> executing = new HashSet<>();
+    private int running;
+    private long seq;
+    private long started;
+    private long totalWaitMs;
+    private long maxWaitMs;
+
+    /** Queues a run; it starts as soon as a slot for its target is free. */
+    synchronized void submit(String runId, DbTarget target, int priority, Runnable body) throws SQLException {
+        if (executing.contains(runId) || queued.stream().anyMatch(j -> j.runId.equals(runId))) {
+            throw new SQLException("Run " + runId + " is already queued or executing in this process");
+        }
+        if (queued.size() >= capacity) {
+            throw new SQLException("Run queue is full (" + capacity + " runs waiting); try again later");
+        }
+        queued.add(new Job(runId, target, priority, seq++, body));
+        dispatch();
+    }
+
+    /** Removes a run that has not started yet. Returns false when it is running or unknown. */
+    synchronized boolean remove(String runId) {
+        return queued.removeIf(j -> j.runId.equals(runId));
+    }
+
+    /** True from the moment the run is dispatched until its body has returned, cancelled or not. */
+    synchronized boolean isExecuting(String runId) {
+        return executing.contains(runId);
+    }
+
+    /** Runs queued or executing. */
+    synchronized int load() {
+        return running + queued.size();
+    }
+
+    /**
+     * Pooled connections one executing run holds at once: its own, plus one per stage in pipelined mode
+     * or the audit writer's in fused mode.
+     */
+    private static int connectionsPerRun() {
+        switch (PipelineConfig.getPipelineMode()) {
+            case "pipelined": return 5;
+            case "fused": return "audit".equals(PipelineConfig.getFusedStaging()) ? 2 : 1;
+            default: return 1;
+        }
+    }
+
+    /** Starts queued runs, highest priority first, while global and per-target slots are free. */
+    private void dispatch() {
+        if (running >= maxConcurrent || queued.isEmpty()) return;
+        List<Job> ordered = new ArrayList<>(queued);
+        ordered.sort(null);
+        Iterator<Job> it = ordered.iterator();
+        while (running < maxConcurrent && it.hasNext()) {
+            Job job = it.next();
+            int onTarget = runningByTarget.getOrDefault(job.target, 0);
+            if (onTarget >= maxPerTarget) continue;
+            queued.remove(job);
+            running++;
+            runningByTarget.put(job.target, onTarget + 1);
+            executing.add(job.runId);
+            long waited = System.currentTimeMillis() - job.queuedAt;
+            started++;
+            totalWaitMs += waited;
+            maxWaitMs = Math.max(maxWaitMs, waited);
+            workers.execute(() -> {
+                try {
+                    job.body.run();
+                } finally {
+                    finished(job);
+                }
+            });
+        }
+    }
+
+    private synchronized void finished(Job job) {
+        running--;
+        executing.remove(job.runId);
+        runningByTarget.computeIfPresent(job.target, (t, n) -> n > 1 ? n - 1 : null);
+        dispatch();
+    }
+
+    /** Queue depth, slot use and wait times for monitoring. */
+    synchronized Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        int manual = 0;
+        long oldest = 0;
+        for (Job j : queued) {
+            if (j.priority == PRIORITY_MANUAL) manual++;
+            oldest = Math.max(oldest, now - j.queuedAt);
+        }
+        m.put("maxConcurrent", maxConcurrent);
+        m.put("maxPerTarget", maxPerTarget);
+        m.put("capacity", capacity);
+        m.put("running", running);
+        m.put("queued", queued.size());
+        m.put("queuedManual", manual);
+        m.put("queuedScheduled", queued.size() - manual);
+        m.put("oldestQueuedMs", oldest);
+        Map<String, Integer> byTarget = new LinkedHashMap<>();
+        for (Map.Entry<DbTarget, Integer> e : runningByTarget.entrySet()) byTarget.put(e.getKey().toString(), e.getValue());
+        m.put("runningByTarget", byTarget);
+        m.put("started", started);
+        m.put("avgWaitMs", started > 0 ? totalWaitMs / started : 0);
+        m.put("maxWaitMs", maxWaitMs);
+        return m;
+    }
+}
@@ -7,9 +7,16 @@ public class ScheduleContextListener implements ServletContextListener {
 
     @Override
     public void contextInitialized(ServletContextEvent sce) {
+        PipelineRunner.failOrphanedQueuedRuns();
         ScheduleRunner.start();
     }
 
     @Override
-    public void contextDestroyed(ServletContextEvent sce) {}
+    public void contextDestroyed(ServletContextEvent sce) {
+        // Stop starting runs, then drain the background writers while their connections still work
+        ScheduleRunner.stop();
+        StepProgress.shutdown();
+        PipelineLogger.shutdown();
+        ConnectionPool.shutdown();
+    }
 }
@@ -3,14 +3,23 @@ package com.pipeline;
 import java.sql.*;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Background scheduler: every minute checks PipelineSchedules for due runs,
- * triggers the pipeline and updates NextRunAt.
+ * Background scheduler: keeps one timer per enabled schedule, armed for its NextRunAt, so a schedule
+ * fires on time without polling. createSchedule/updateSchedule/deleteSchedule re-arm or cancel the
+ * timer; a full reload from PipelineSchedules every SCHEDULE_RECONCILE_SEC is only a safety net for
+ * changes made elsewhere. When a timer fires the schedule is claimed with a lease, so with several
+ * app nodes each occurrence runs on one node only. NextRunAt is advanced, and the claim released, in
+ * the transaction that creates the run, so an occurrence is never started twice nor skipped; the lease
+ * only matters when a node dies between claiming and starting.
  */
 public class ScheduleRunner {
 
@@ -19,49 +28,167 @@ public class ScheduleRunner {
         t.setDaemon(true);
         return t;
     });
+    /** Armed timer per ScheduleId. */
+    private static final ConcurrentHashMap<String, Timer> TIMERS = new ConcurrentHashMap<>();
+
+    /** Identifies this node in PipelineSchedules.ClaimedBy. */
+    private static final String NODE_ID = PipelineConfig.getSchedulerNodeId();
+    private static final long CLAIM_DEFER_PER_RUN_MS = 250;
+    private static final long CLAIM_DEFER_MAX_MS = 5000;
+    private static final int CLAIM_RECHECK_MAX_SEC = 30;
 
     private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("HH:mm");
     private static final ZoneId ZONE = ZoneId.systemDefault();
 
+    /** A pending fire of one schedule at one NextRunAt. */
+    private static final class Timer {
+        final Instant due;
+        final ScheduledFuture<?> future;
+
+        Timer(Instant due, ScheduledFuture<?> future) {
+            this.due = due;
+            this.future = future;
+        }
+    }
+
     public static void start() {
+        long reconcileSec = PipelineConfig.getScheduleReconcileSeconds();
         EXECUTOR.scheduleWithFixedDelay(() -> {
             try {
-                runDueSchedules();
+                reconcile();
             } catch (Throwable t) {
                 t.printStackTrace();
             }
-        }, 1, 60, TimeUnit.SECONDS);
+        }, 1, reconcileSec, TimeUnit.SECONDS);
     }
 
-    static void runDueSchedules() throws SQLException {
+    /** Cancels the reconcile loop and every armed timer. */
+    public static void stop() {
+        EXECUTOR.shutdownNow();
+        TIMERS.clear();
+    }
+
+    /** Loads every enabled schedule and arms its timer; overdue schedules fire right away. */
+    static void reconcile() throws SQLException {
         Database.initSchema();
+        Map<String, Instant> due = new HashMap<>();
+        try (Connection c = Database.getConnection();
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT ScheduleId, NextRunAt FROM dbo.PipelineSchedules WHERE Enabled = 1 AND NextRunAt IS NOT NULL")) {
+            while (rs.next()) due.put(rs.getString("ScheduleId"), toInstant(rs.getTimestamp("NextRunAt")));
+        }
+        for (String id : TIMERS.keySet()) {
+            if (!due.containsKey(id)) disarm(id);
+        }
+        for (Map.Entry<String, Instant> e : due.entrySet()) arm(e.getKey(), e.getValue());
+    }
+
+    /** Arms (or moves) a schedule's timer; null cancels it. */
+    static void arm(String scheduleId, Instant due) {
+        if (due == null) {
+            disarm(scheduleId);
+            return;
+        }
+        TIMERS.compute(scheduleId, (id, current) -> {
+            if (current != null && current.due.equals(due) && !current.future.isDone()) return current;
+            if (current != null) current.future.cancel(false);
+            long delayMs = Math.max(0, Duration.between(Instant.now(), due).toMillis());
+            return new Timer(due, EXECUTOR.schedule(() -> fire(id, due, false), delayMs, TimeUnit.MILLISECONDS));
+        });
+    }
+
+    static void disarm(String scheduleId) {
+        Timer t = TIMERS.remove(scheduleId);
+        if (t != null) t.future.cancel(false);
+    }
+
+    /**
+     * Timer callback. Every node fires at the same NextRunAt, so the schedule is claimed first and only
+     * the node whose claim succeeds starts the run. A node that already has runs queued or executing
+     * waits a little before claiming, so idle nodes tend to win and the work spreads out.
+     */
+    private static void fire(String scheduleId, Instant armedFor, boolean deferred) {
+        int load = PipelineRunner.activeRuns();
+        if (!deferred && load > 0) {
+            long delayMs = Math.min(CLAIM_DEFER_MAX_MS, load * CLAIM_DEFER_PER_RUN_MS);
+            TIMERS.computeIfPresent(scheduleId, (id, t) -> t.due.equals(armedFor)
+                ? new Timer(armedFor, EXECUTOR.schedule(() -> fire(id, armedFor, true), delayMs, TimeUnit.MILLISECONDS))
+                : t);
+            return;
+        }
+        TIMERS.computeIfPresent(scheduleId, (id, t) -> t.due.equals(armedFor) ? null : t);
         try (Connection c = Database.getConnection()) {
-            String sql = "SELECT ScheduleId, Name, ScheduleType, RunAtTime, DayOfWeek, DayOfMonth, SourcePath FROM dbo.PipelineSchedules WHERE Enabled = 1 AND NextRunAt IS NOT NULL AND NextRunAt <= SYSDATETIMEOFFSET()";
-            try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery(sql)) {
-                while (rs.next()) {
-                    String scheduleId = rs.getString("ScheduleId");
-                    String name = rs.getString("Name");
-                    String type = rs.getString("ScheduleType");
-                    String runAtTime = rs.getString("RunAtTime");
-                    Integer dayOfWeek = (Integer) rs.getObject("DayOfWeek");
-                    Integer dayOfMonth = (Integer) rs.getObject("DayOfMonth");
-                    String sourcePath = rs.getString("SourcePath");
-                    try {
-                        PipelineRunner.startPipelineRun(sourcePath);
-                    } catch (Exception e) {
-                        e.printStackTrace();
+            String type, runAtTime, sourcePath;
+            Integer dayOfWeek, dayOfMonth;
+            try (PreparedStatement ps = c.prepareStatement(
+                "UPDATE s SET ClaimedBy = ?, ClaimExpiresAt = DATEADD(SECOND, ?, SYSUTCDATETIME()) "
+                    + "OUTPUT inserted.ScheduleType, inserted.RunAtTime, inserted.DayOfWeek, inserted.DayOfMonth, inserted.SourcePath "
+                    + "FROM dbo.PipelineSchedules s WITH (UPDLOCK, READPAST) "
+                    + "WHERE s.ScheduleId = ? AND s.Enabled = 1 AND s.NextRunAt <= ? "
+                    + "AND (s.ClaimExpiresAt IS NULL OR s.ClaimExpiresAt < SYSUTCDATETIME())")) {
+                ps.setString(1, NODE_ID);
+                ps.setInt(2, PipelineConfig.getScheduleClaimLeaseSeconds());
+                ps.setString(3, scheduleId);
+                ps.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now(ZONE)));
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) {
+                        rearmUnclaimed(c, scheduleId);
+                        return;
                     }
-                    updateAfterRun(c, scheduleId, type, runAtTime, dayOfWeek, dayOfMonth);
+                    type = rs.getString("ScheduleType");
+                    runAtTime = rs.getString("RunAtTime");
+                    dayOfWeek = (Integer) rs.getObject("DayOfWeek");
+                    dayOfMonth = (Integer) rs.getObject("DayOfMonth");
+                    sourcePath = rs.getString("SourcePath");
                 }
             }
+            ZonedDateTime now = ZonedDateTime.now(ZONE);
+            String next = computeNextRun(type, runAtTime, dayOfWeek, dayOfMonth, now);
+            try {
+                PipelineRunner.startScheduledRun(sourcePath, (tx, runId) -> advance(tx, scheduleId, now, next));
+            } catch (Exception e) {
+                // The run was not created, so NextRunAt did not move: let the claim go and retry shortly.
+                // (A run that was created but could not be queued is already Failed and the schedule advanced;
+                // the retry then just re-arms for the new NextRunAt.)
+                e.printStackTrace();
+                releaseClaim(c, scheduleId);
+                arm(scheduleId, Instant.now().plusSeconds(CLAIM_RECHECK_MAX_SEC));
+                return;
+            }
+            arm(scheduleId, parseNextRun(next));
+        } catch (Throwable t) {
+            t.printStackTrace();
         }
     }
 
-    private static void updateAfterRun(Connection c, String scheduleId, String type, String runAtTime, Integer dayOfWeek, Integer dayOfMonth) throws SQLException {
-        ZonedDateTime now = ZonedDateTime.now(ZONE);
-        String next = computeNextRun(type, runAtTime, dayOfWeek, dayOfMonth, now);
+    /**
+     * The claim failed: the schedule is not due (moved, disabled or deleted) or another node holds it.
+     * In the latter case check again soon, so an occurrence whose node died is picked up once its
+     * lease expires.
+     */
+    private static void rearmUnclaimed(Connection c, String scheduleId) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(
+            "SELECT NextRunAt, DATEDIFF(SECOND, SYSUTCDATETIME(), ClaimExpiresAt) AS LeaseSec FROM dbo.PipelineSchedules WHERE ScheduleId = ? AND Enabled = 1")) {
+            ps.setString(1, scheduleId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return; // deleted or disabled
+                Instant next = toInstant(rs.getTimestamp("NextRunAt"));
+                Instant now = Instant.now();
+                if (next == null || next.isAfter(now)) {
+                    arm(scheduleId, next);
+                    return;
+                }
+                int leaseSec = Math.max(0, rs.getInt("LeaseSec"));
+                arm(scheduleId, now.plusSeconds(Math.min(leaseSec + 1, CLAIM_RECHECK_MAX_SEC)));
+            }
+        }
+    }
+
+    /** Moves NextRunAt to next and releases the claim, on the transaction that creates the run. */
+    private static void advance(Connection c, String scheduleId, ZonedDateTime now, String next) throws SQLException {
         String nowStr = now.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
-        try (PreparedStatement ps = c.prepareStatement("UPDATE dbo.PipelineSchedules SET LastRunAt = ?, NextRunAt = ?, UpdatedAt = ? WHERE ScheduleId = ?")) {
+        try (PreparedStatement ps = c.prepareStatement(
+            "UPDATE dbo.PipelineSchedules SET LastRunAt = ?, NextRunAt = ?, UpdatedAt = ?, ClaimedBy = NULL, ClaimExpiresAt = NULL WHERE ScheduleId = ?")) {
             ps.setString(1, nowStr);
             ps.setString(2, next);
             ps.setString(3, nowStr);
@@ -70,6 +197,27 @@ public class ScheduleRunner {
         }
     }
 
+    /** Gives up this node's claim after a failed start, so any node can retry the occurrence. */
+    private static void releaseClaim(Connection c, String scheduleId) {
+        try (PreparedStatement ps = c.prepareStatement(
+            "UPDATE dbo.PipelineSchedules SET ClaimedBy = NULL, ClaimExpiresAt = NULL WHERE ScheduleId = ? AND ClaimedBy = ?")) {
+            ps.setString(1, scheduleId);
+            ps.setString(2, NODE_ID);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace(); // the lease expires instead
+        }
+    }
+
+    /** NextRunAt is stored as the local wall-clock time of this server's zone. */
+    private static Instant toInstant(Timestamp ts) {
+        return ts == null ? null : ts.toLocalDateTime().atZone(ZONE).toInstant();
+    }
+
+    private static Instant parseNextRun(String next) {
+        return next == null ? null : OffsetDateTime.parse(next, DateTimeFormatter.ISO_OFFSET_DATE_TIME).toInstant();
+    }
+
     /** Returns next run as ISO string or null. */
     public static String computeNextRun(String scheduleType, String runAtTime, Integer dayOfWeek, Integer dayOfMonth, ZonedDateTime after) {
         LocalTime time;
@@ -131,6 +279,7 @@ public class ScheduleRunner {
             ps.setString(10, nextRun);
             ps.executeUpdate();
         }
+        arm(scheduleId, parseNextRun(nextRun));
         return scheduleId;
     }
 
@@ -179,6 +328,7 @@ public class ScheduleRunner {
                 ps.setString(10, scheduleId);
                 ps.executeUpdate();
             }
+            arm(scheduleId, parseNextRun(nextRun));
         }
     }
 
@@ -188,5 +338,6 @@ public class ScheduleRunner {
             ps.setString(1, scheduleId);
             ps.executeUpdate();
         }
+        disarm(scheduleId);
     }
 }
@@ -0,0 +1,107 @@
+package com.pipeline;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * SHA-256 of a landing file plus its size and modification time, recorded on the run
+ * (PipelineRuns.SourceHash / SourceSize / SourceModifiedAt). The file is read in one streaming pass;
+ * when an earlier run recorded the same path, size and modification time, its hash is reused and the
+ * file is not read at all.
+ */
+final class SourceFingerprint {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    final String hash;
+    final long size;
+    final long modifiedMillis;
+
+    private SourceFingerprint(String hash, long size, long modifiedMillis) {
+        this.hash = hash;
+        this.size = size;
+        this.modifiedMillis = modifiedMillis;
+    }
+
+    /** Fingerprint of the file, reusing a hash recorded for the same path, size and modification time. */
+    static SourceFingerprint of(Connection c, String path) throws SQLException, IOException {
+        Path p = Paths.get(path);
+        long size = Files.size(p);
+        long modified = Files.getLastModifiedTime(p).toMillis();
+        try (PreparedStatement ps = c.prepareStatement(
+            "SELECT TOP (1) SourceHash FROM dbo.PipelineRuns " +
+            "WHERE SourceSize = ? AND SourceModifiedAt = ? AND SourcePath = ? AND SourceHash IS NOT NULL")) {
+            ps.setLong(1, size);
+            ps.setLong(2, modified);
+            ps.setString(3, path);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) return new SourceFingerprint(rs.getString(1), size, modified);
+            }
+        }
+        return new SourceFingerprint(sha256(p), size, modified);
+    }
+
+    /** Hash recorded for the run, or null when it has none. */
+    static String recorded(Connection c, String runId) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("SELECT SourceHash FROM dbo.PipelineRuns WHERE RunId = ?")) {
+            ps.setString(1, runId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    /** Stores the fingerprint on the run (in the caller's transaction). */
+    void record(Connection c, String runId) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(
+            "UPDATE dbo.PipelineRuns SET SourceHash = ?, SourceSize = ?, SourceModifiedAt = ? WHERE RunId = ?")) {
+            ps.setString(1, hash);
+            ps.setLong(2, size);
+            ps.setLong(3, modifiedMillis);
+            ps.setString(4, runId);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * RunNumber of the run that last loaded this database successfully, when it loaded the same content;
+     * otherwise null. Only the latest successful run counts: once a different file has been loaded,
+     * loading this one again can change Target_Orders. FinishedAt is ISO-8601 text, so it is converted
+     * before ordering rather than compared as a string.
+     */
+    Integer duplicateOf(Connection c) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(
+            "SELECT TOP (1) RunNumber, SourceHash FROM dbo.PipelineRuns WHERE Status = 'Success' " +
+            "ORDER BY TRY_CONVERT(DATETIMEOFFSET, FinishedAt) DESC, RunNumber DESC")) {
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next() && hash.equals(rs.getString("SourceHash"))) return rs.getInt("RunNumber");
+            }
+        }
+        return null;
+    }
+
+    private static String sha256(Path p) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buf = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(p)) {
+            for (int n; (n = in.read(buf)) > 0; ) digest.update(buf, 0, n);
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+}
@@ -3,50 +3,184 @@ package com.pipeline;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
-/** Updates StepRuns with row-level progress (RowsProcessed / RowsTotal). Uses separate connection so updates are visible immediately. */
+/**
+ * Row-level progress (RowsProcessed / RowsTotal) per run and step. Steps record counts in memory,
+ * which costs no I/O; one background writer publishes changed counters to dbo.StepRuns every
+ * PROGRESS_FLUSH_MS on its own connection, so the UI sees progress before the step commits. Only the
+ * latest count of a step is written, however often it changed in between. Live counts can be read
+ * with {@link #snapshot(String)}.
+ */
 public final class StepProgress {
 
-    private static final int UPDATE_INTERVAL = 10_000;
+    private static final long SHUTDOWN_WAIT_SEC = 10;
 
-    private static final ThreadLocal<Object[]> DB_PARAMS = new ThreadLocal<>();
+    private static final ThreadLocal<DbTarget> DB_TARGET = new ThreadLocal<>();
+    private static final ConcurrentHashMap<String, RunProgress> RUNS = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "step-progress-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        long interval = PipelineConfig.getProgressFlushMillis();
+        WRITER.scheduleWithFixedDelay(StepProgress::publishAll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /** Counters of one step. */
+    private static final class Counter {
+        final AtomicLong processed = new AtomicLong();
+        volatile Integer total;
+        final AtomicBoolean dirty = new AtomicBoolean();
+    }
+
+    /** Counters of one run and the DB its StepRuns rows live in. */
+    private static final class RunProgress {
+        final DbTarget target;
+        final ConcurrentHashMap<Integer, Counter> steps = new ConcurrentHashMap<>();
+
+        RunProgress(DbTarget target) {
+            this.target = target;
+        }
+    }
+
+    private StepProgress() {}
 
     /** Set DB connection params for progress updates (same DB as pipeline run). Call from PipelineRunner before steps. */
     public static void setDbParams(String host, Integer port, String user, String password) {
-        DB_PARAMS.set(new Object[] { host, port, user, password });
+        DB_TARGET.set(DbTarget.of(host, port, user, password));
     }
 
     /** Clear DB params. Call after pipeline completes. */
     public static void clearDbParams() {
-        DB_PARAMS.remove();
+        DB_TARGET.remove();
     }
 
-    /** Call periodically from steps to update progress. Uses its own connection so UI sees updates before step commits. */
-    public static void update(String runId, int stepNumber, int processed, Integer total) {
-        if (runId == null) return;
-        try {
-            Object[] p = DB_PARAMS.get();
-            Connection conn = (p != null && (p[0] != null || p[1] != null || p[2] != null || p[3] != null))
-                ? Database.getConnection((String) p[0], (Integer) p[1], (String) p[2], (String) p[3])
-                : Database.getConnection();
-            try (PreparedStatement ps = conn.prepareStatement(
-                "UPDATE dbo.StepRuns SET RowsProcessed = ?, RowsTotal = ? WHERE RunId = ? AND StepNumber = ?")) {
-                ps.setInt(1, processed);
-                ps.setObject(2, total);
-                ps.setString(3, runId);
-                ps.setInt(4, stepNumber);
-                ps.executeUpdate();
-                conn.commit();
+    /** Wraps a task for a worker thread so its progress updates go to the same DB as the calling thread's. */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        DbTarget target = DB_TARGET.get();
+        return () -> {
+            if (target != null) DB_TARGET.set(target);
+            try {
+                return task.call();
             } finally {
-                conn.close();
+                DB_TARGET.remove();
             }
-        } catch (SQLException e) {
-            // Progress is best-effort; don't fail the step
+        };
+    }
+
+    /** Records a step's cumulative row count. Never touches the database; the writer publishes it. */
+    public static void update(String runId, int stepNumber, int processed, Integer total) {
+        if (runId == null) return;
+        RunProgress run = RUNS.computeIfAbsent(runId, k -> {
+            DbTarget target = DB_TARGET.get();
+            return new RunProgress(target != null ? target : DbTarget.DEFAULT);
+        });
+        Counter c = run.steps.computeIfAbsent(stepNumber, k -> new Counter());
+        c.processed.set(processed);
+        c.total = total;
+        c.dirty.set(true);
+        if (RunEvents.hasListeners(runId)) {
+            Map<String, Object> e = new HashMap<>();
+            e.put("StepNumber", stepNumber);
+            e.put("RowsProcessed", processed);
+            e.put("RowsTotal", total);
+            RunEvents.publish(runId, "progress", e);
         }
     }
 
-    /** Whether to update (every UPDATE_INTERVAL rows to avoid excessive DB writes). */
+    /** Whether a step should record progress. Recording is in-memory, so every batch may. */
     public static boolean shouldUpdate(int processed) {
-        return processed > 0 && (processed % UPDATE_INTERVAL == 0 || processed < UPDATE_INTERVAL);
+        return processed > 0;
+    }
+
+    /**
+     * Live progress of a run still in this process: step number to {RowsProcessed, RowsTotal}, or null
+     * when the run has no counters here (finished, or running elsewhere).
+     */
+    public static Map<Integer, Object[]> snapshot(String runId) {
+        RunProgress run = runId != null ? RUNS.get(runId) : null;
+        if (run == null) return null;
+        Map<Integer, Object[]> out = new TreeMap<>();
+        for (Map.Entry<Integer, Counter> e : run.steps.entrySet()) {
+            out.put(e.getKey(), new Object[] { (int) e.getValue().processed.get(), e.getValue().total });
+        }
+        return out;
+    }
+
+    /** Publishes the run's last counts and forgets it. Call when the run ends. */
+    public static void finish(String runId) {
+        if (runId == null) return;
+        RunProgress run = RUNS.get(runId);
+        if (run == null) return;
+        synchronized (StepProgress.class) {
+            publish(run.target, Map.of(runId, run));
+        }
+        RUNS.remove(runId, run);
+    }
+
+    /** Stops the background writer, then publishes every count it had not written yet. */
+    public static void shutdown() {
+        WRITER.shutdown();
+        try {
+            WRITER.awaitTermination(SHUTDOWN_WAIT_SEC, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        publishAll();
+    }
+
+    private static void publishAll() {
+        Map<DbTarget, Map<String, RunProgress>> byTarget = new LinkedHashMap<>();
+        for (Map.Entry<String, RunProgress> e : RUNS.entrySet()) {
+            byTarget.computeIfAbsent(e.getValue().target, k -> new LinkedHashMap<>()).put(e.getKey(), e.getValue());
+        }
+        synchronized (StepProgress.class) {
+            for (Map.Entry<DbTarget, Map<String, RunProgress>> e : byTarget.entrySet()) publish(e.getKey(), e.getValue());
+        }
+    }
+
+    /** One batched UPDATE per target for every changed counter. Best-effort: failed counters stay dirty. */
+    private static void publish(DbTarget target, Map<String, RunProgress> runs) {
+        List<Counter> sent = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+        for (Map.Entry<String, RunProgress> run : runs.entrySet()) {
+            for (Map.Entry<Integer, Counter> step : run.getValue().steps.entrySet()) {
+                Counter c = step.getValue();
+                if (!c.dirty.getAndSet(false)) continue;
+                sent.add(c);
+                rows.add(new Object[] { (int) c.processed.get(), c.total, run.getKey(), step.getKey() });
+            }
+        }
+        if (rows.isEmpty()) return;
+        try (Connection conn = target.connect();
+             PreparedStatement ps = conn.prepareStatement(
+                 "UPDATE dbo.StepRuns SET RowsProcessed = ?, RowsTotal = ? WHERE RunId = ? AND StepNumber = ?")) {
+            for (Object[] r : rows) {
+                ps.setInt(1, (Integer) r[0]);
+                ps.setObject(2, r[1]);
+                ps.setString(3, (String) r[2]);
+                ps.setInt(4, (Integer) r[3]);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } catch (SQLException | RuntimeException e) {
+            // Progress is best-effort; don't fail the step. Retry on the next tick.
+            for (Counter c : sent) c.dirty.set(true);
+        }
     }
 }
@@ -2,9 +2,13 @@ package com.pipeline.servlet;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.pipeline.ConnectionPool;
 import com.pipeline.Database;
+import com.pipeline.PipelineConfig;
 import com.pipeline.PipelineRunner;
+import com.pipeline.RunCache;
 import com.pipeline.ScheduleRunner;
+import com.pipeline.StepProgress;
 import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
@@ -18,10 +22,14 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
@@ -29,13 +37,23 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 /**
- * Serves JSON API: GET /api/runs, GET /api/runs/{id}, GET /api/runs/{id}/logs, GET /api/logs, POST /api/pipeline/upload, POST /api/pipeline/trigger
+ * Serves JSON API: GET /api/runs, GET /api/runs/{id}, GET /api/runs/{id}/logs, GET /api/runs/{id}/events (SSE), GET /api/logs, POST /api/pipeline/upload, POST /api/pipeline/trigger
  */
 public class ApiServlet extends HttpServlet {
 
     private static final Gson GSON = new GsonBuilder().create();
+    private static final int LOG_PAGE_DEFAULT = 1000;
+    private static final int LOG_PAGE_MAX = 5000;
+    private static final int RUN_PAGE_MAX = 500;
+    private static final boolean GZIP = PipelineConfig.isApiGzipEnabled();
+
+    @Override
+    public void destroy() {
+        RunEventStream.shutdown();
+    }
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
@@ -50,12 +68,16 @@ public class ApiServlet extends HttpServlet {
             }
             if (path != null && path.startsWith("/runs/")) {
                 String rest = path.substring("/runs/".length());
+                if (rest.endsWith("/events")) {
+                    RunEventStream.open(req, resp, rest.substring(0, rest.length() - "/events".length()));
+                    return;
+                }
                 if (rest.contains("/logs")) {
                     String runId = rest.substring(0, rest.indexOf("/logs"));
-                    runLogs(runId, resp);
+                    runLogs(runId, req, resp);
                     return;
                 }
-                runDetail(rest, resp);
+                runDetail(rest, req, resp);
                 return;
             }
             if ("/logs".equals(path)) {
@@ -63,7 +85,7 @@ public class ApiServlet extends HttpServlet {
                 return;
             }
             if ("/schedules".equals(path)) {
-                listSchedules(resp);
+                listSchedules(req, resp);
                 return;
             }
             if (path != null && path.startsWith("/schedules/")) {
@@ -77,6 +99,14 @@ public class ApiServlet extends HttpServlet {
                 checkRunningStatus(resp);
                 return;
             }
+            if ("/admin/pool".equals(path)) {
+                resp.getWriter().write(GSON.toJson(ConnectionPool.stats()));
+                return;
+            }
+            if ("/admin/queue".equals(path)) {
+                resp.getWriter().write(GSON.toJson(PipelineRunner.queueStats()));
+                return;
+            }
             resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
             resp.getWriter().write("{\"error\":\"Not found\"}");
         } catch (SQLException e) {
@@ -139,6 +169,18 @@ public class ApiServlet extends HttpServlet {
                 return;
             }
         }
+        if (path != null && path.startsWith("/runs/") && path.endsWith("/resume")) {
+            String runId = path.substring("/runs/".length(), path.length() - "/resume".length());
+            if (!runId.isEmpty()) {
+                try {
+                    resumeRun(runId, resp);
+                } catch (SQLException e) {
+                    resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    resp.getWriter().write("{\"error\":\"" + escapeJson(e.getMessage()) + "\"}");
+                }
+                return;
+            }
+        }
         resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
         resp.getWriter().write("{\"error\":\"Not found\"}");
     }
@@ -194,13 +236,12 @@ public class ApiServlet extends HttpServlet {
         return sb.toString();
     }
 
-    private void listSchedules(HttpServletResponse resp) throws SQLException, IOException {
+    private void listSchedules(HttpServletRequest req, HttpServletResponse resp) throws SQLException, IOException {
         Database.initSchema();
         try (Connection c = Database.getConnection();
              PreparedStatement ps = c.prepareStatement("SELECT ScheduleId, Name, ScheduleType, RunAtTime, DayOfWeek, DayOfMonth, SourcePath, Enabled, CreatedAt, UpdatedAt, LastRunAt, NextRunAt FROM dbo.PipelineSchedules ORDER BY CreatedAt DESC");
              ResultSet rs = ps.executeQuery()) {
-            List<Map<String, Object>> rows = resultSetToMaps(rs);
-            resp.getWriter().write(GSON.toJson(rows));
+            JsonRows.write(rs, responseWriter(req, resp), GSON);
         }
     }
 
@@ -254,7 +295,7 @@ public class ApiServlet extends HttpServlet {
             String fileName = item.getName();
             if (fileName == null || fileName.isEmpty()) continue;
             String ext = fileName.contains(".") ? fileName.substring(fileName.lastIndexOf('.')).toLowerCase() : ".csv";
-            if (!".csv".equals(ext) && !".json".equals(ext)) {
+            if (!isLandingExtension(ext)) {
                 resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
                 resp.getWriter().write("{\"error\":\"Only CSV or JSON files are allowed\"}");
                 return;
@@ -300,7 +341,7 @@ public class ApiServlet extends HttpServlet {
             String name = item.getName();
             if (name == null || name.isEmpty()) continue;
             String ext = name.contains(".") ? name.substring(name.lastIndexOf('.')).toLowerCase() : ".csv";
-            if (!".csv".equals(ext) && !".json".equals(ext)) {
+            if (!isLandingExtension(ext)) {
                 resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
                 resp.getWriter().write("{\"error\":\"Only CSV or JSON files are allowed\"}");
                 return;
@@ -327,6 +368,11 @@ public class ApiServlet extends HttpServlet {
         resp.getWriter().write(GSON.toJson(body));
     }
 
+    /** File types PullStep can load: CSV, a JSON array, or newline-delimited JSON (.ndjson / .jsonl). */
+    private static boolean isLandingExtension(String ext) {
+        return ".csv".equals(ext) || ".json".equals(ext) || ".ndjson".equals(ext) || ".jsonl".equals(ext);
+    }
+
     private static Integer parseIntSafe(String s) {
         try {
             return Integer.parseInt(s);
@@ -382,8 +428,15 @@ public class ApiServlet extends HttpServlet {
     private static final String STATUS_TIMEOUT_6H = "Failed-TimeOut-6Hours";
     private static final int RUN_TIMEOUT_HOURS = 6;
 
-    /** If run is Running and StartedAt is older than 6 hours, mark as Failed-TimeOut-6Hours and update the map. */
+    /**
+     * If run is Running and StartedAt is older than 6 hours, or Queued and created more than 6 hours ago
+     * (its queue was lost with the node that held it), mark as Failed-TimeOut-6Hours and update the map.
+     */
     private void markRunTimedOutIfNeeded(Connection c, Map<String, Object> run) throws SQLException {
+        if ("Queued".equals(run.get("Status"))) {
+            markQueuedRunTimedOutIfNeeded(c, run);
+            return;
+        }
         if (!"Running".equals(run.get("Status"))) return;
         Object startedObj = run.get("StartedAt");
         if (startedObj == null) return;
@@ -403,17 +456,41 @@ public class ApiServlet extends HttpServlet {
             ps.executeUpdate();
         }
         c.commit();
+        RunCache.invalidate(runId);
+        run.put("Status", STATUS_TIMEOUT_6H);
+        run.put("FinishedAt", now);
+    }
+
+    /** Queued runs have no StartedAt; CreatedAt is compared on the database clock that set it. */
+    private void markQueuedRunTimedOutIfNeeded(Connection c, Map<String, Object> run) throws SQLException {
+        String runId = (String) run.get("RunId");
+        if (runId == null) return;
+        String now = Instant.now().toString();
+        int updated;
+        try (PreparedStatement ps = c.prepareStatement(
+            "UPDATE dbo.PipelineRuns SET Status = ?, FinishedAt = ? WHERE RunId = ? AND Status = 'Queued' " +
+            "AND CreatedAt < DATEADD(HOUR, ?, CAST(SYSDATETIMEOFFSET() AS DATETIME2))")) {
+            ps.setString(1, STATUS_TIMEOUT_6H);
+            ps.setString(2, now);
+            ps.setString(3, runId);
+            ps.setInt(4, -RUN_TIMEOUT_HOURS);
+            updated = ps.executeUpdate();
+        }
+        c.commit();
+        if (updated == 0) return;
+        PipelineRunner.dropQueuedRun(runId);
+        RunCache.invalidate(runId);
         run.put("Status", STATUS_TIMEOUT_6H);
         run.put("FinishedAt", now);
     }
 
-    /** Admin: check all runs with Status=Running and mark as Failed-TimeOut-6Hours if started > 6 hours ago. */
+    /** Admin: check all runs with Status=Running or Queued and mark as Failed-TimeOut-6Hours if started (queued) > 6 hours ago. */
     private void checkRunningStatus(HttpServletResponse resp) throws SQLException, IOException {
         Database.initSchema();
         List<String> runIdsMarked = new ArrayList<>();
         try (Connection c = Database.getConnection();
              PreparedStatement ps = c.prepareStatement(
-                 "SELECT RunId, RunNumber, PipelineName, ADFRunId, StartedAt, FinishedAt, Status, CreatedAt FROM dbo.PipelineRuns WHERE Status = 'Running'")) {
+                 "SELECT RunId, RunNumber, PipelineName, ADFRunId, StartedAt, FinishedAt, Status, CreatedAt FROM dbo.PipelineRuns WHERE Status IN ('Running', 'Queued')")) {
             try (ResultSet rs = ps.executeQuery()) {
                 List<Map<String, Object>> rows = resultSetToMaps(rs);
                 for (Map<String, Object> run : rows) {
@@ -432,12 +509,16 @@ public class ApiServlet extends HttpServlet {
         resp.getWriter().write(GSON.toJson(body));
     }
 
+    /** Newest runs first; ?beforeRunNumber= continues from the last RunNumber of the previous page. */
     private void listRuns(HttpServletRequest req, HttpServletResponse resp) throws SQLException, IOException {
         String pipeline = req.getParameter("pipeline");
         String status = req.getParameter("status");
+        Integer beforeRunNumber = parseIntSafe(req.getParameter("beforeRunNumber"));
+        int limit = pageLimit(parseIntSafe(req.getParameter("limit")), 100, RUN_PAGE_MAX);
         StringBuilder sql = new StringBuilder(
-            "SELECT TOP 100 RunId, RunNumber, PipelineName, ADFRunId, StartedAt, FinishedAt, Status, CreatedAt FROM dbo.PipelineRuns WHERE 1=1");
+            "SELECT TOP (?) RunId, RunNumber, PipelineName, ADFRunId, StartedAt, FinishedAt, Status, CreatedAt FROM dbo.PipelineRuns WHERE 1=1");
         List<Object> params = new ArrayList<>();
+        params.add(limit);
         if (pipeline != null && !pipeline.isEmpty()) {
             sql.append(" AND PipelineName = ?");
             params.add(pipeline);
@@ -446,49 +527,103 @@ public class ApiServlet extends HttpServlet {
             sql.append(" AND Status = ?");
             params.add(status);
         }
-        sql.append(" ORDER BY CreatedAt DESC");
+        if (beforeRunNumber != null) {
+            sql.append(" AND RunNumber < ?");
+            params.add(beforeRunNumber);
+        }
+        sql.append(" ORDER BY RunNumber DESC");
 
-        Database.initSchema();
-        try (Connection c = Database.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql.toString())) {
-            for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
-            try (ResultSet rs = ps.executeQuery()) {
-                List<Map<String, Object>> rows = resultSetToMaps(rs);
-                for (Map<String, Object> run : rows) {
-                    markRunTimedOutIfNeeded(c, run);
+        String cacheKey = limit + "|" + pipeline + "|" + status + "|" + beforeRunNumber;
+        RunCache.Cached cached = RunCache.getList(cacheKey);
+        if (cached == null) {
+            long generation = RunCache.generation();
+            Database.initSchema();
+            try (Connection c = Database.getConnection();
+                 PreparedStatement ps = c.prepareStatement(sql.toString())) {
+                for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
+                try (ResultSet rs = ps.executeQuery()) {
+                    List<Map<String, Object>> rows = resultSetToMaps(rs);
+                    for (Map<String, Object> run : rows) {
+                        markRunTimedOutIfNeeded(c, run);
+                    }
+                    cached = RunCache.putList(cacheKey, GSON.toJson(rows), generation);
                 }
-                resp.getWriter().write(GSON.toJson(rows));
             }
         }
+        writeCached(req, resp, cached);
     }
 
-    private void runDetail(String runId, HttpServletResponse resp) throws SQLException, IOException {
-        try {
-            runDetailQuery(runId, resp, false);
-        } catch (SQLException e) {
-            String msg = e.getMessage() != null ? e.getMessage() : "";
-            if (msg.contains("Invalid object name") || msg.contains("does not exist") || msg.contains("no such table")) {
-                Database.initSchema();
-                runDetailQuery(runId, resp, true);
-            } else {
-                throw e;
+    /**
+     * Writes a cached body with its ETag, or 304 when the client already has it. The gzip encoding of a
+     * body gets its own ETag ("...-gzip"), since its bytes differ from the identity encoding's.
+     */
+    private static void writeCached(HttpServletRequest req, HttpServletResponse resp, RunCache.Cached entry) throws IOException {
+        if (GZIP) resp.setHeader("Vary", "Accept-Encoding");
+        String etag = acceptsGzip(req) ? entry.etag.substring(0, entry.etag.length() - 1) + "-gzip\"" : entry.etag;
+        resp.setHeader("ETag", etag);
+        resp.setHeader("Cache-Control", "no-cache");
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || "*".equals(ifNoneMatch.trim()))) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        try (Writer out = responseWriter(req, resp)) {
+            out.write(entry.body);
+        }
+    }
+
+    /**
+     * The response body writer, gzip-compressed when API_GZIP is on and the client accepts it. With
+     * API_GZIP on every response varies on Accept-Encoding, identity ones included, so shared caches
+     * keep the two encodings apart.
+     */
+    private static Writer responseWriter(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        if (GZIP) resp.setHeader("Vary", "Accept-Encoding");
+        if (!acceptsGzip(req)) return resp.getWriter();
+        resp.setHeader("Content-Encoding", "gzip");
+        return new OutputStreamWriter(new GZIPOutputStream(resp.getOutputStream(), 8192), StandardCharsets.UTF_8);
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest req) {
+        String accept = req.getHeader("Accept-Encoding");
+        return GZIP && accept != null && accept.contains("gzip");
+    }
+
+    private void runDetail(String runId, HttpServletRequest req, HttpServletResponse resp) throws SQLException, IOException {
+        RunCache.Cached cached = RunCache.getRun(runId);
+        if (cached == null) {
+            long generation = RunCache.generation();
+            Map<String, Object> run;
+            try {
+                run = runDetailQuery(runId, false);
+            } catch (SQLException e) {
+                String msg = e.getMessage() != null ? e.getMessage() : "";
+                if (msg.contains("Invalid object name") || msg.contains("does not exist") || msg.contains("no such table")) {
+                    Database.refreshSchema();
+                    run = runDetailQuery(runId, true);
+                } else {
+                    throw e;
+                }
+            }
+            if (run == null) {
+                resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                resp.getWriter().write("{\"error\":\"Run not found\"}");
+                return;
             }
+            cached = RunCache.putRun(runId, GSON.toJson(run), RunCache.isFinal(run.get("Status")), generation);
         }
+        writeCached(req, resp, cached);
     }
 
-    /** Run the run-detail query. Call with initSchemaAlreadyRun=true when retrying after initSchema. */
-    private void runDetailQuery(String runId, HttpServletResponse resp, boolean initSchemaAlreadyRun) throws SQLException, IOException {
+    /** Run the run-detail query; null when the run does not exist. Call with initSchemaAlreadyRun=true when retrying after initSchema. */
+    private Map<String, Object> runDetailQuery(String runId, boolean initSchemaAlreadyRun) throws SQLException {
         try (Connection c = Database.getConnection()) {
             Map<String, Object> run;
             try (PreparedStatement ps = c.prepareStatement(
                 "SELECT RunId, RunNumber, PipelineName, ADFRunId, StartedAt, FinishedAt, Status, CreatedAt FROM dbo.PipelineRuns WHERE RunId = ?")) {
                 ps.setString(1, runId);
                 try (ResultSet rs = ps.executeQuery()) {
-                    if (!rs.next()) {
-                        resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                        resp.getWriter().write("{\"error\":\"Run not found\"}");
-                        return;
-                    }
+                    if (!rs.next()) return null;
                     run = rowToMap(rs);
                 }
             }
@@ -501,8 +636,18 @@ public class ApiServlet extends HttpServlet {
                     while (rs.next()) steps.add(rowToMap(rs));
                 }
             }
+            // Running in this process: show the in-memory counts, which are ahead of the last StepRuns write.
+            Map<Integer, Object[]> live = StepProgress.snapshot(runId);
+            if (live != null) {
+                for (Map<String, Object> step : steps) {
+                    Object[] p = step.get("StepNumber") instanceof Number ? live.get(((Number) step.get("StepNumber")).intValue()) : null;
+                    if (p == null) continue;
+                    step.put("RowsProcessed", p[0]);
+                    step.put("RowsTotal", p[1]);
+                }
+            }
             run.put("steps", steps);
-            resp.getWriter().write(GSON.toJson(run));
+            return run;
         }
     }
 
@@ -521,77 +666,160 @@ public class ApiServlet extends HttpServlet {
                     status = rs.getString("Status");
                 }
             }
-            if (!"Running".equals(status)) {
+            if (!"Running".equals(status) && !"Queued".equals(status)) {
                 resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
                 resp.getWriter().write("{\"error\":\"Run is not running (status: " + (status != null ? status : "unknown") + ")\"}");
                 return;
             }
             PipelineRunner.cancelRun(runId);
-            try (PreparedStatement ps = c.prepareStatement("UPDATE dbo.PipelineRuns SET Status = ?, FinishedAt = ? WHERE RunId = ? AND Status = 'Running'")) {
+            try (PreparedStatement ps = c.prepareStatement("UPDATE dbo.PipelineRuns SET Status = ?, FinishedAt = ? WHERE RunId = ? AND Status IN ('Running', 'Queued')")) {
                 ps.setString(1, "Cancelled");
                 ps.setString(2, java.time.Instant.now().toString());
                 ps.setString(3, runId);
                 ps.executeUpdate();
             }
             c.commit();
+            RunCache.invalidate(runId);
         }
         resp.getWriter().write("{\"ok\":true,\"message\":\"Cancellation requested\"}");
     }
 
-    private void runLogs(String runId, HttpServletResponse resp) throws SQLException, IOException {
+    /** Re-queues a failed, cancelled or timed-out run; it continues from its step checkpoints. */
+    private void resumeRun(String runId, HttpServletResponse resp) throws SQLException, IOException {
         Database.initSchema();
-        try (Connection c = Database.getConnection()) {
-            try (PreparedStatement ps = c.prepareStatement("SELECT RunId FROM dbo.PipelineRuns WHERE RunId = ?")) {
-                ps.setString(1, runId);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (!rs.next()) {
-                        resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                        resp.getWriter().write("{\"error\":\"Run not found\"}");
-                        return;
-                    }
+        String status;
+        String sourcePath;
+        String pullStatus;
+        try (Connection c = Database.getConnection();
+             PreparedStatement ps = c.prepareStatement(
+                 "SELECT r.Status, r.SourcePath, s.Status AS PullStatus FROM dbo.PipelineRuns r " +
+                 "LEFT JOIN dbo.StepRuns s ON s.RunId = r.RunId AND s.StepNumber = 1 WHERE r.RunId = ?")) {
+            ps.setString(1, runId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                    resp.getWriter().write("{\"error\":\"Run not found\"}");
+                    return;
                 }
+                status = rs.getString("Status");
+                sourcePath = rs.getString("SourcePath");
+                pullStatus = rs.getString("PullStatus");
             }
-            List<Map<String, Object>> logs = new ArrayList<>();
-            try (PreparedStatement ps = c.prepareStatement(
-                "SELECT LogId, RunId, PipelineName, LogAt, Level, StepNumber, StepName, Message, Details FROM dbo.PipelineLogs WHERE RunId = ? ORDER BY LogAt ASC")) {
-                ps.setString(1, runId);
+        }
+        if (!PipelineRunner.isResumable(status)) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"Run cannot be resumed (status: " + (status != null ? escapeJson(status) : "unknown") + ")\"}");
+            return;
+        }
+        if (PipelineRunner.isExecuting(runId)) {
+            resp.setStatus(HttpServletResponse.SC_CONFLICT);
+            resp.getWriter().write("{\"error\":\"The run's previous attempt is still stopping; resume it once it has finished\"}");
+            return;
+        }
+        if (!"Success".equals(pullStatus) && (sourcePath == null || !new File(sourcePath).isFile())) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"Source file of the run is not available: " + escapeJson(sourcePath != null ? sourcePath : "not recorded") + "\"}");
+            return;
+        }
+        if (!"Success".equals(pullStatus) && !PipelineRunner.isSourceUnchanged(runId, sourcePath)) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"Source file has changed since the run started; start a new run instead\"}");
+            return;
+        }
+        if (!PipelineRunner.resumeRun(runId, sourcePath)) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"Run cannot be resumed (status changed)\"}");
+            return;
+        }
+        resp.getWriter().write("{\"ok\":true,\"message\":\"Run resumed\"}");
+    }
+
+    /**
+     * Logs of one run in LogId order. ?afterLogId= returns only rows newer than that id (tailing);
+     * ?beforeLogId= returns the newest rows older than it (history). Both are index seeks on
+     * (RunId, LogId), so a call costs the same however many rows the run has.
+     */
+    private void runLogs(String runId, HttpServletRequest req, HttpServletResponse resp) throws SQLException, IOException {
+        Integer afterLogId = parseIntSafe(req.getParameter("afterLogId"));
+        Integer beforeLogId = parseIntSafe(req.getParameter("beforeLogId"));
+        Integer limitParam = parseIntSafe(req.getParameter("limit"));
+        boolean paged = afterLogId != null || beforeLogId != null || limitParam != null;
+        int limit = pageLimit(limitParam, LOG_PAGE_DEFAULT, LOG_PAGE_MAX);
+        String columns = "LogId, RunId, PipelineName, LogAt, Level, StepNumber, StepName, Message, Details";
+        StringBuilder sql = new StringBuilder("SELECT ");
+        if (paged) sql.append("TOP (?) ");
+        sql.append(columns).append(" FROM dbo.PipelineLogs WHERE RunId = ?");
+        if (afterLogId != null) sql.append(" AND LogId > ?");
+        if (beforeLogId != null) sql.append(" AND LogId < ?");
+        if (paged && afterLogId == null) {
+            // A history page is the newest rows before the cursor, returned oldest first
+            sql.append(" ORDER BY LogId DESC");
+            sql.insert(0, "SELECT " + columns + " FROM (").append(") page ORDER BY LogId ASC");
+        } else {
+            sql.append(" ORDER BY LogId ASC");
+        }
+
+        Database.initSchema();
+        try (Connection c = Database.getConnection()) {
+            if (!runExists(c, runId)) {
+                resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                resp.getWriter().write("{\"error\":\"Run not found\"}");
+                return;
+            }
+            try (PreparedStatement ps = c.prepareStatement(sql.toString())) {
+                int p = 1;
+                if (paged) ps.setInt(p++, limit);
+                ps.setString(p++, runId);
+                if (afterLogId != null) ps.setInt(p++, afterLogId);
+                if (beforeLogId != null) ps.setInt(p++, beforeLogId);
                 try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) logs.add(rowToMap(rs));
+                    JsonRows.write(rs, responseWriter(req, resp), GSON);
                 }
             }
-            resp.getWriter().write(GSON.toJson(logs));
         }
     }
 
+    private static boolean runExists(Connection c, String runId) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("SELECT 1 FROM dbo.PipelineRuns WHERE RunId = ?")) {
+            ps.setString(1, runId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /** Newest logs first across runs; ?beforeLogId= continues from the last LogId of the previous page. */
     private void allLogs(HttpServletRequest req, HttpServletResponse resp) throws SQLException, IOException {
         String runId = req.getParameter("runId");
         String pipeline = req.getParameter("pipeline");
         String level = req.getParameter("level");
-        int limit = 500;
-        String limitParam = req.getParameter("limit");
-        if (limitParam != null) {
-            try { limit = Math.min(Integer.parseInt(limitParam), 2000); } catch (NumberFormatException ignored) {}
-        }
+        Integer beforeLogId = parseIntSafe(req.getParameter("beforeLogId"));
+        int limit = pageLimit(parseIntSafe(req.getParameter("limit")), 500, LOG_PAGE_MAX);
         StringBuilder sql = new StringBuilder(
-            "SELECT LogId, RunId, PipelineName, LogAt, Level, StepNumber, StepName, Message, Details FROM dbo.PipelineLogs WHERE 1=1");
+            "SELECT TOP (?) LogId, RunId, PipelineName, LogAt, Level, StepNumber, StepName, Message, Details FROM dbo.PipelineLogs WHERE 1=1");
         List<Object> params = new ArrayList<>();
+        params.add(limit);
         if (runId != null && !runId.isEmpty()) { sql.append(" AND RunId = ?"); params.add(runId); }
         if (pipeline != null && !pipeline.isEmpty()) { sql.append(" AND PipelineName = ?"); params.add(pipeline); }
         if (level != null && !level.isEmpty()) { sql.append(" AND Level = ?"); params.add(level); }
-        sql.append(" ORDER BY LogAt DESC OFFSET 0 ROWS FETCH NEXT ? ROWS ONLY");
-        params.add(limit);
+        if (beforeLogId != null) { sql.append(" AND LogId < ?"); params.add(beforeLogId); }
+        sql.append(" ORDER BY LogId DESC");
 
         Database.initSchema();
         try (Connection c = Database.getConnection();
              PreparedStatement ps = c.prepareStatement(sql.toString())) {
             for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
             try (ResultSet rs = ps.executeQuery()) {
-                List<Map<String, Object>> rows = resultSetToMaps(rs);
-                resp.getWriter().write(GSON.toJson(rows));
+                JsonRows.write(rs, responseWriter(req, resp), GSON);
             }
         }
     }
 
+    private static int pageLimit(Integer requested, int defaultLimit, int max) {
+        if (requested == null || requested <= 0) return defaultLimit;
+        return Math.min(requested, max);
+    }
+
     private void triggerPipeline(HttpServletRequest req, HttpServletResponse resp) throws Exception {
         if (!ServletFileUpload.isMultipartContent(req)) {
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
@@ -635,9 +863,9 @@ public class ApiServlet extends HttpServlet {
         }
         String name = serverFile.getName();
         String ext = name.contains(".") ? name.substring(name.lastIndexOf('.')).toLowerCase() : "";
-        if (!".csv".equals(ext) && !".json".equals(ext)) {
+        if (!isLandingExtension(ext)) {
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            resp.getWriter().write("{\"error\":\"Server file must be .csv or .json\"}");
+            resp.getWriter().write("{\"error\":\"Server file must be .csv, .json, .ndjson or .jsonl\"}");
             return;
         }
         String pathToUse = serverFile.getAbsolutePath();
@@ -668,9 +896,10 @@ public class ApiServlet extends HttpServlet {
 
     private static Map<String, Object> rowToMap(ResultSet rs) throws SQLException {
         Map<String, Object> m = new HashMap<>();
-        int cols = rs.getMetaData().getColumnCount();
+        ResultSetMetaData md = rs.getMetaData();
+        int cols = md.getColumnCount();
         for (int i = 1; i <= cols; i++) {
-            String label = rs.getMetaData().getColumnLabel(i);
+            String label = md.getColumnLabel(i);
             Object v = rs.getObject(i);
             m.put(label, v);
         }
@@ -0,0 +1,112 @@
+package com.pipeline.servlet;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Writes a result set straight to the response as a JSON array of row objects, one row at a time,
+ * instead of building a list of maps and a JSON string first. Column labels and types are read once.
+ * Output matches Gson's rendering of the same rows as maps (null columns are left out).
+ */
+final class JsonRows {
+
+    private static final int STRING = 0, INT = 1, LONG = 2, DOUBLE = 3, BOOLEAN = 4, OTHER = 5;
+
+    private JsonRows() {}
+
+    /** Streams every remaining row of rs to out and closes out. Returns the number of rows written. */
+    static int write(ResultSet rs, Writer out, Gson gson) throws SQLException, IOException {
+        ResultSetMetaData md = rs.getMetaData();
+        int cols = md.getColumnCount();
+        String[] names = new String[cols];
+        int[] kinds = new int[cols];
+        for (int i = 0; i < cols; i++) {
+            names[i] = md.getColumnLabel(i + 1);
+            kinds[i] = kind(md.getColumnType(i + 1));
+        }
+        int rows = 0;
+        try (JsonWriter w = new JsonWriter(out)) {
+            w.setSerializeNulls(false);
+            w.setHtmlSafe(gson.htmlSafe());
+            w.beginArray();
+            while (rs.next()) {
+                w.beginObject();
+                for (int i = 0; i < cols; i++) {
+                    w.name(names[i]);
+                    value(w, rs, i + 1, kinds[i], gson);
+                }
+                w.endObject();
+                rows++;
+            }
+            w.endArray();
+        }
+        return rows;
+    }
+
+    private static void value(JsonWriter w, ResultSet rs, int col, int kind, Gson gson) throws SQLException, IOException {
+        switch (kind) {
+            case STRING:
+                w.value(rs.getString(col));
+                return;
+            case INT: {
+                int v = rs.getInt(col);
+                if (rs.wasNull()) w.nullValue(); else w.value(v);
+                return;
+            }
+            case LONG: {
+                long v = rs.getLong(col);
+                if (rs.wasNull()) w.nullValue(); else w.value(v);
+                return;
+            }
+            case DOUBLE: {
+                double v = rs.getDouble(col);
+                if (rs.wasNull()) w.nullValue(); else w.value(v);
+                return;
+            }
+            case BOOLEAN: {
+                boolean v = rs.getBoolean(col);
+                if (rs.wasNull()) w.nullValue(); else w.value(v);
+                return;
+            }
+            default: {
+                Object v = rs.getObject(col);
+                if (v == null) w.nullValue(); else gson.toJson(v, v.getClass(), w);
+            }
+        }
+    }
+
+    private static int kind(int sqlType) {
+        switch (sqlType) {
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+            case Types.CLOB:
+            case Types.NCLOB:
+                return STRING;
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return INT;
+            case Types.BIGINT:
+                return LONG;
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return DOUBLE;
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return BOOLEAN;
+            default:
+                return OTHER;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.pipeline.servlet;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.pipeline.Database;
+import com.pipeline.RunEvents;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One GET /api/runs/{id}/events Server-Sent Events stream. Run events are queued per stream and
+ * written by a sender thread, so a slow client never holds up the pipeline; a client that falls more
+ * than MAX_PENDING events behind is disconnected and falls back to polling. The stream ends after the
+ * "run" event, on a write error or after TIMEOUT_MS. An unknown run gets a 404; a run that has already
+ * finished gets its "run" event straight away.
+ */
+final class RunEventStream implements RunEvents.Listener, AsyncListener {
+
+    private static final long TIMEOUT_MS = 30 * 60 * 1000L;
+    private static final long HEARTBEAT_SEC = 15;
+    private static final int MAX_PENDING = 1000;
+    /** Queued after the "run" event; the sender closes the stream when it reaches it. */
+    private static final Object END = new Object();
+
+    private static final Gson GSON = new GsonBuilder().create();
+    private static final ExecutorService SENDERS = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "sse-sender");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final ScheduledExecutorService HEARTBEAT = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "sse-heartbeat");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final String runId;
+    private final AsyncContext ctx;
+    private final BlockingQueue<Object> pending = new ArrayBlockingQueue<>(MAX_PENDING);
+    /** A drain is running or due; true until open has set the headers, so nothing is written before. */
+    private final AtomicBoolean scheduled = new AtomicBoolean(true);
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile ScheduledFuture<?> heartbeat;
+
+    private RunEventStream(String runId, AsyncContext ctx) {
+        this.runId = runId;
+        this.ctx = ctx;
+    }
+
+    /**
+     * Switches the request to async mode and subscribes it to the run's events. The run's status is read
+     * after subscribing, so a run finishing in between still ends the stream.
+     */
+    static void open(HttpServletRequest req, HttpServletResponse resp, String runId) throws IOException {
+        AsyncContext ctx = req.startAsync();
+        ctx.setTimeout(TIMEOUT_MS);
+        RunEventStream stream = new RunEventStream(runId, ctx);
+        ctx.addListener(stream);
+        stream.enqueue("retry: 3000\n\n");
+        RunEvents.subscribe(runId, stream);
+        String status, finishedAt;
+        try {
+            Database.initSchema();
+            try (Connection c = Database.getConnection();
+                 PreparedStatement ps = c.prepareStatement("SELECT Status, FinishedAt FROM dbo.PipelineRuns WHERE RunId = ?")) {
+                ps.setString(1, runId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) {
+                        stream.reject(HttpServletResponse.SC_NOT_FOUND, "Run not found");
+                        return;
+                    }
+                    status = rs.getString("Status");
+                    finishedAt = rs.getString("FinishedAt");
+                }
+            }
+        } catch (SQLException e) {
+            stream.reject(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+            return;
+        }
+        resp.setContentType("text/event-stream");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "no-cache");
+        resp.setHeader("X-Accel-Buffering", "no");
+        if (!"Queued".equals(status) && !"Running".equals(status)) {
+            Map<String, Object> e = new HashMap<>();
+            e.put("Status", status);
+            e.put("FinishedAt", finishedAt);
+            stream.onEvent("run", e);
+        } else {
+            stream.heartbeat = HEARTBEAT.scheduleAtFixedRate(() -> stream.enqueue(": ping\n\n"), HEARTBEAT_SEC, HEARTBEAT_SEC, TimeUnit.SECONDS);
+        }
+        stream.scheduled.set(false);
+        stream.kick();
+    }
+
+    /** Stops the sender and heartbeat threads; open streams end with the container's connections. */
+    static void shutdown() {
+        HEARTBEAT.shutdownNow();
+        SENDERS.shutdownNow();
+    }
+
+    /** Answers with a JSON error instead of a stream; nothing has been written yet. */
+    private void reject(int status, String error) throws IOException {
+        closed.set(true);
+        RunEvents.unsubscribe(runId, this);
+        HttpServletResponse resp = (HttpServletResponse) ctx.getResponse();
+        resp.setStatus(status);
+        resp.getWriter().write(GSON.toJson(Collections.singletonMap("error", error)));
+        ctx.complete();
+    }
+
+    @Override
+    public void onEvent(String type, Map<String, Object> data) {
+        enqueue("event: " + type + "\ndata: " + GSON.toJson(data) + "\n\n");
+        if ("run".equals(type)) enqueue(END);
+    }
+
+    private void enqueue(Object frame) {
+        if (closed.get()) return;
+        if (!pending.offer(frame)) {
+            close();
+            return;
+        }
+        kick();
+    }
+
+    private void kick() {
+        if (!pending.isEmpty() && scheduled.compareAndSet(false, true)) SENDERS.execute(this::drain);
+    }
+
+    /** Writes everything queued; only one drain runs per stream at a time. */
+    private void drain() {
+        do {
+            try {
+                PrintWriter out = ctx.getResponse().getWriter();
+                for (Object frame; (frame = pending.poll()) != null; ) {
+                    if (frame == END) {
+                        close();
+                        return;
+                    }
+                    out.write((String) frame);
+                }
+                out.flush();
+                if (out.checkError()) throw new IOException("Client disconnected");
+            } catch (IOException | IllegalStateException e) {
+                close();
+                return;
+            }
+            scheduled.set(false);
+        } while (!pending.isEmpty() && !closed.get() && scheduled.compareAndSet(false, true));
+    }
+
+    private void close() {
+        if (!closed.compareAndSet(false, true)) return;
+        RunEvents.unsubscribe(runId, this);
+        ScheduledFuture<?> h = heartbeat;
+        if (h != null) h.cancel(false);
+        pending.clear();
+        try {
+            ctx.complete();
+        } catch (IllegalStateException ignored) {
+            // Already completed by the container
+        }
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        close();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        close();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        close();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {}
+}
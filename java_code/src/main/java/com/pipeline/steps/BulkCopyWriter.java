@@ -0,0 +1,118 @@
+package com.pipeline.steps;
+
+import com.microsoft.sqlserver.jdbc.ISQLServerBulkData;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopy;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopyOptions;
+import com.microsoft.sqlserver.jdbc.SQLServerConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@link TableWriter} backed by SQLServerBulkCopy. Rows are buffered up to the batch size and each
+ * buffer is sent as one bulk insert, so memory stays bounded while the server gets a single TDS bulk
+ * stream per batch instead of one INSERT per row. Runs inside the connection's open transaction,
+ * keeps explicit NULLs, and maps columns by name so identity/default columns are left to the server.
+ */
+final class BulkCopyWriter extends TableWriter {
+
+    private final SQLServerBulkCopy bulk;
+    private final String[] columns;
+    private final int[] types;
+    private final List<Object[]> buffer;
+
+    BulkCopyWriter(Connection conn, String table, String[] columns, int[] types, String runId, int stepNumber, int batchSize) throws SQLException {
+        super(runId, stepNumber, batchSize);
+        this.columns = columns;
+        this.types = types;
+        this.buffer = new ArrayList<>(batchSize);
+        this.bulk = new SQLServerBulkCopy(conn.unwrap(SQLServerConnection.class));
+        SQLServerBulkCopyOptions options = new SQLServerBulkCopyOptions();
+        options.setKeepNulls(true);
+        options.setBulkCopyTimeout(0);
+        options.setBatchSize(batchSize);
+        bulk.setBulkCopyOptions(options);
+        bulk.setDestinationTableName(table);
+        for (int i = 0; i < columns.length; i++) bulk.addColumnMapping(i + 1, columns[i]);
+    }
+
+    @Override
+    boolean isBulk() {
+        return true;
+    }
+
+    @Override
+    protected void append(Object[] values) {
+        buffer.add(values.clone());
+    }
+
+    @Override
+    protected void flush() throws SQLException {
+        if (buffer.isEmpty()) return;
+        bulk.writeToServer(new BufferedRows(columns, types, buffer));
+        buffer.clear();
+    }
+
+    @Override
+    public void close() {
+        bulk.close();
+    }
+
+    /** One buffered batch exposed to bulk copy as a forward-only record source. */
+    private static final class BufferedRows implements ISQLServerBulkData {
+        private static final long serialVersionUID = 1L;
+
+        private final String[] columns;
+        private final int[] types;
+        private final List<Object[]> rows;
+        private int index = -1;
+
+        BufferedRows(String[] columns, int[] types, List<Object[]> rows) {
+            this.columns = columns;
+            this.types = types;
+            this.rows = rows;
+        }
+
+        @Override
+        public Set<Integer> getColumnOrdinals() {
+            Set<Integer> ordinals = new LinkedHashSet<>();
+            for (int i = 1; i <= columns.length; i++) ordinals.add(i);
+            return ordinals;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column - 1];
+        }
+
+        @Override
+        public int getColumnType(int column) {
+            return types[column - 1];
+        }
+
+        @Override
+        public int getPrecision(int column) {
+            return types[column - 1] == Types.DOUBLE ? 15 : 4000;
+        }
+
+        @Override
+        public int getScale(int column) {
+            return 0;
+        }
+
+        @Override
+        public Object[] getRowData() {
+            return rows.get(index);
+        }
+
+        @Override
+        public boolean next() {
+            return ++index < rows.size();
+        }
+    }
+}
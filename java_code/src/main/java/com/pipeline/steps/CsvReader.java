@@ -0,0 +1,143 @@
+package com.pipeline.steps;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * RFC 4180 CSV tokenizer over a reusable char buffer. Handles quoted commas, doubled quotes ("") and
+ * line breaks inside quotes; records end at LF, CRLF or CR. Field text is copied into one shared
+ * record buffer and only turned into a String when {@link #field(int)} is called, so reading a row
+ * allocates nothing beyond the values the caller asks for.
+ * <p>
+ * A quote outside a quoted section opens one (as the old line parser did), so loosely quoted input
+ * still reads the same way.
+ */
+final class CsvReader implements CsvSource {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader in;
+    private final char[] buf = new char[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private boolean eof;
+    private boolean first = true;
+
+    private char[] rec = new char[256];
+    private int recLen;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int fieldCount;
+
+    CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        recLen = 0;
+        fieldCount = 0;
+        if (!fill()) return false;
+        if (first) {
+            first = false;
+            if (buf[pos] == '\uFEFF') pos++; // skip a UTF-8 byte order mark
+            if (!fill()) return false;
+        }
+        int fieldStart = 0;
+        boolean inQuotes = false;
+        while (true) {
+            if (pos >= limit && !fill()) break;
+            char c = buf[pos++];
+            if (inQuotes) {
+                if (c == '"') {
+                    if (pos >= limit) fill();
+                    if (pos < limit && buf[pos] == '"') {
+                        pos++;
+                        append(c);
+                    } else {
+                        inQuotes = false;
+                    }
+                } else {
+                    append(c);
+                }
+            } else if (c == ',') {
+                endField(fieldStart);
+                fieldStart = recLen;
+            } else if (c == '\n') {
+                break;
+            } else if (c == '\r') {
+                if (pos >= limit) fill();
+                if (pos < limit && buf[pos] == '\n') pos++;
+                break;
+            } else if (c == '"') {
+                inQuotes = true;
+            } else {
+                append(c);
+            }
+        }
+        endField(fieldStart);
+        return true;
+    }
+
+    @Override
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    @Override
+    public String field(int i) {
+        if (i < 0 || i >= fieldCount) return null;
+        int s = starts[i];
+        int e = ends[i];
+        while (s < e && rec[s] <= ' ') s++;
+        while (e > s && rec[e - 1] <= ' ') e--;
+        return s == e ? "" : new String(rec, s, e - s);
+    }
+
+    /** Position of the first header matching name (case-insensitive), or -1. Resolve once per file. */
+    static int columnIndex(String[] headers, String name) {
+        for (int i = 0; i < headers.length; i++) {
+            if (headers[i] != null && headers[i].equalsIgnoreCase(name)) return i;
+        }
+        return -1;
+    }
+
+    private void append(char c) {
+        if (recLen == rec.length) rec = Arrays.copyOf(rec, rec.length * 2);
+        rec[recLen++] = c;
+    }
+
+    private void endField(int start) {
+        if (fieldCount == starts.length) {
+            starts = Arrays.copyOf(starts, fieldCount * 2);
+            ends = Arrays.copyOf(ends, fieldCount * 2);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = recLen;
+        fieldCount++;
+    }
+
+    /** Ensures at least one unread char is buffered. Returns false at end of input. */
+    private boolean fill() throws IOException {
+        if (pos < limit) return true;
+        if (eof) return false;
+        int n;
+        do {
+            n = in.read(buf, 0, buf.length);
+        } while (n == 0);
+        if (n < 0) {
+            eof = true;
+            pos = limit = 0;
+            return false;
+        }
+        pos = 0;
+        limit = n;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
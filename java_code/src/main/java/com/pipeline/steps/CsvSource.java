@@ -0,0 +1,22 @@
+package com.pipeline.steps;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/** Record-at-a-time CSV input. Field values are trimmed; a field past the end of the record is null. */
+interface CsvSource extends Closeable {
+
+    /** Advances to the next record. Returns false at end of input. */
+    boolean next() throws IOException;
+
+    int fieldCount();
+
+    String field(int i) throws IOException;
+
+    /** Current record's fields as trimmed strings (used for the header row). */
+    default String[] fields() throws IOException {
+        String[] out = new String[fieldCount()];
+        for (int i = 0; i < out.length; i++) out[i] = field(i);
+        return out;
+    }
+}
@@ -1,19 +1,26 @@
 package com.pipeline.steps;
 
-import com.pipeline.StepProgress;
-
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
 
 public class ExtractStep {
 
-    private static final int BATCH_SIZE = 2000;
+    static final String[] COLUMNS = { "RunId", "OrderId", "CustomerId", "Amount", "OrderDate" };
+    static final int[] TYPES = { Types.NVARCHAR, Types.NVARCHAR, Types.NVARCHAR, Types.DOUBLE, Types.NVARCHAR };
 
-    public static int run(Connection conn, String runId, int stepNumber) throws SQLException {
+    /** Landing rows with an Id past the checkpoint are read in Id order, so a resumed step picks up where it left off. */
+    public static int run(Connection conn, String runId, int stepNumber, StepCheckpoint checkpoint) throws SQLException {
+        if (ServerStep.enabled()) {
+            checkpoint.restart("dbo.Staging_Orders");
+            int rows = ServerStep.call(conn, "dbo.usp_Extract_Orders", runId, stepNumber);
+            checkpoint.finish(rows);
+            return rows;
+        }
         Integer total = null;
         try (PreparedStatement cnt = conn.prepareStatement("SELECT COUNT(*) FROM dbo.Landing_Orders WHERE RunId = ?")) {
             cnt.setString(1, runId);
@@ -21,53 +28,60 @@ public class ExtractStep {
                 if (rs.next()) total = rs.getInt(1);
             }
         }
-        String sel = "SELECT * FROM dbo.Landing_Orders WHERE RunId = ?";
-        String ins = "INSERT INTO dbo.Staging_Orders (RunId, OrderId, CustomerId, Amount, OrderDate) VALUES (?,?,?,?,?)";
-        int count = 0;
+        String sel = "SELECT * FROM dbo.Landing_Orders WHERE RunId = ? AND Id > ? ORDER BY Id";
         try (PreparedStatement select = conn.prepareStatement(sel);
-             PreparedStatement insert = conn.prepareStatement(ins)) {
+             TableWriter insert = TableWriter.open(conn, "dbo.Staging_Orders", COLUMNS, TYPES, runId, stepNumber)) {
+            insert.setTotal(total);
+            insert.setCheckpoint(checkpoint);
             select.setString(1, runId);
+            select.setLong(2, checkpoint.key());
             try (ResultSet rs = select.executeQuery()) {
-                int batchCount = 0;
                 while (rs.next()) {
-                    String orderId = trim(rs.getString("OrderId"));
-                    if (orderId == null || orderId.isEmpty()) continue;
-                    String customerId = trim(rs.getString("CustomerId"));
-                    if (customerId == null || customerId.isEmpty()) customerId = "UNKNOWN";
+                    checkpoint.at(rs.getLong("Id"));
+                    String orderId = orderId(rs.getString("OrderId"));
+                    if (orderId == null) continue;
                     double amount = 0;
                     try {
                         String a = rs.getString("Amount");
                         if (a != null && !a.isEmpty()) amount = Double.parseDouble(a.trim());
                     } catch (NumberFormatException ignored) {}
-                    String orderDateStr = trim(rs.getString("OrderDate"));
-                    String orderDate = null;
-                    if (orderDateStr != null && !orderDateStr.isEmpty()) {
-                        try {
-                            orderDate = LocalDate.parse(orderDateStr).toString();
-                        } catch (DateTimeParseException ignored) {}
-                    }
-                    insert.setString(1, runId);
-                    insert.setString(2, orderId);
-                    insert.setString(3, customerId);
-                    insert.setDouble(4, amount);
-                    insert.setString(5, orderDate);
-                    insert.addBatch();
-                    count++;
-                    if (++batchCount >= BATCH_SIZE) {
-                        insert.executeBatch();
-                        batchCount = 0;
-                        if (StepProgress.shouldUpdate(count)) {
-                            StepProgress.update(runId, stepNumber, count, total);
-                        }
-                    }
-                }
-                if (batchCount > 0) insert.executeBatch();
-                if (StepProgress.shouldUpdate(count)) {
-                    StepProgress.update(runId, stepNumber, count, total);
+                    insert.add(runId, orderId, customerId(rs.getString("CustomerId")), amount, orderDate(rs.getString("OrderDate")));
                 }
             }
+            return insert.finish();
+        }
+    }
+
+    /** Trimmed OrderId, or null when it is missing and the row is dropped. */
+    static String orderId(String raw) {
+        String orderId = trim(raw);
+        return orderId == null || orderId.isEmpty() ? null : orderId;
+    }
+
+    /** Trimmed CustomerId; missing customers become UNKNOWN. */
+    static String customerId(String raw) {
+        String customerId = trim(raw);
+        return customerId == null || customerId.isEmpty() ? "UNKNOWN" : customerId;
+    }
+
+    /**
+     * Amount of a landing row that has not been through Landing_Orders yet: converted as the FLOAT
+     * column would convert it, with a missing amount as 0.
+     */
+    static double amount(String raw) throws SQLException {
+        Double amount = LandingWriter.toFloat(raw);
+        return amount != null ? amount : 0;
+    }
+
+    /** OrderDate as yyyy-MM-dd, or null when it is missing or not a valid ISO date. */
+    static String orderDate(String raw) {
+        String orderDateStr = trim(raw);
+        if (orderDateStr == null || orderDateStr.isEmpty()) return null;
+        try {
+            return LocalDate.parse(orderDateStr).toString();
+        } catch (DateTimeParseException e) {
+            return null;
         }
-        return count;
     }
 
     private static String trim(String s) {
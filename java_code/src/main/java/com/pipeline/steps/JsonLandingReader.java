@@ -0,0 +1,151 @@
+package com.pipeline.steps;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.sql.SQLException;
+
+/**
+ * Token-streaming reader for JSON landing files: either one top-level array of order objects or
+ * newline-delimited JSON (one object per line). Objects are read one at a time; each object's tokens
+ * are copied to a JsonWriter as they are read, which yields RawPayload without building a Map and
+ * serializing it again. Null members are dropped from RawPayload and HTML characters are escaped,
+ * as Gson's default toJson did. Numeric column values keep the text Gson's Map parsing gave them
+ * ("1001.0"): OrderId is the Target_Orders MERGE key, so a reload must match the rows loaded before.
+ */
+final class JsonLandingReader {
+
+    private final JsonReader in;
+    private final StringWriter raw = new StringWriter(256);
+
+    JsonLandingReader(Reader reader) {
+        this.in = new JsonReader(reader);
+        this.in.setLenient(true); // lets NDJSON files hold several top-level values
+    }
+
+    /** Streams every object to the sink. Returns without rows for an empty file or a top-level null. */
+    void read(String runId, LandingSink sink) throws IOException, SQLException {
+        JsonToken first;
+        try {
+            first = in.peek();
+        } catch (EOFException e) {
+            return;
+        }
+        LandingRow row = new LandingRow();
+        if (first == JsonToken.BEGIN_ARRAY) {
+            in.beginArray();
+            while (in.hasNext()) sink.add(readObject(runId, row));
+            in.endArray();
+        } else if (first == JsonToken.NULL) {
+            in.nextNull();
+        } else {
+            while (in.peek() != JsonToken.END_DOCUMENT) sink.add(readObject(runId, row));
+        }
+    }
+
+    private LandingRow readObject(String runId, LandingRow row) throws IOException {
+        raw.getBuffer().setLength(0);
+        JsonWriter out = newWriter(raw);
+        String orderId = null, orderIdAlt = null, customerId = null, customerIdAlt = null;
+        String amount = null, amountAlt = null, orderDate = null, orderDateAlt = null;
+        in.beginObject();
+        out.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            out.name(name);
+            String v = copyValue(out);
+            switch (name) {
+                case "OrderId": orderId = v; break;
+                case "orderId": orderIdAlt = v; break;
+                case "CustomerId": customerId = v; break;
+                case "customerId": customerIdAlt = v; break;
+                case "Amount": amount = v; break;
+                case "amount": amountAlt = v; break;
+                case "OrderDate": orderDate = v; break;
+                case "orderDate": orderDateAlt = v; break;
+                default: break;
+            }
+        }
+        in.endObject();
+        out.endObject();
+        out.flush();
+        row.runId = runId;
+        row.orderId = orderId != null ? orderId : orderIdAlt;
+        row.customerId = customerId != null ? customerId : customerIdAlt;
+        row.amount = amount != null ? amount : amountAlt;
+        row.orderDate = orderDate != null ? orderDate : orderDateAlt;
+        row.sourceType = "JSON";
+        row.rawPayload = raw.toString();
+        return row;
+    }
+
+    /**
+     * Copies the next value to out and returns it as text: strings as-is, numbers as the double Gson
+     * parsed them to (RawPayload keeps the literal), booleans as their literal, nested objects/arrays
+     * as compact JSON, null as null.
+     */
+    private String copyValue(JsonWriter out) throws IOException {
+        switch (in.peek()) {
+            case STRING: {
+                String s = in.nextString();
+                out.value(s);
+                return s;
+            }
+            case NUMBER: {
+                String s = in.nextString();
+                out.jsonValue(s);
+                return Double.toString(Double.parseDouble(s));
+            }
+            case BOOLEAN: {
+                boolean b = in.nextBoolean();
+                out.value(b);
+                return String.valueOf(b);
+            }
+            case NULL:
+                in.nextNull();
+                out.nullValue();
+                return null;
+            default: {
+                StringWriter nested = new StringWriter();
+                JsonWriter w = newWriter(nested);
+                copyNested(w);
+                w.flush();
+                String json = nested.toString();
+                out.jsonValue(json);
+                return json;
+            }
+        }
+    }
+
+    private void copyNested(JsonWriter out) throws IOException {
+        if (in.peek() == JsonToken.BEGIN_ARRAY) {
+            in.beginArray();
+            out.beginArray();
+            while (in.hasNext()) copyValue(out);
+            in.endArray();
+            out.endArray();
+        } else {
+            in.beginObject();
+            out.beginObject();
+            while (in.hasNext()) {
+                out.name(in.nextName());
+                copyValue(out);
+            }
+            in.endObject();
+            out.endObject();
+        }
+    }
+
+    private static JsonWriter newWriter(StringWriter target) {
+        JsonWriter w = new JsonWriter(target);
+        w.setSerializeNulls(false);
+        w.setHtmlSafe(true);
+        w.setLenient(true);
+        return w;
+    }
+}
@@ -0,0 +1,6 @@
+package com.pipeline.steps;
+
+/** One row bound for dbo.Landing_Orders. Values are kept as read from the source file. */
+class LandingRow {
+    String runId, orderId, customerId, amount, orderDate, sourceType, rawPayload;
+}
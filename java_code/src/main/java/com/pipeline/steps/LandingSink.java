@@ -0,0 +1,8 @@
+package com.pipeline.steps;
+
+import java.sql.SQLException;
+
+/** Receives landing rows as a reader produces them. The row may be reused by the caller after add returns. */
+interface LandingSink {
+    void add(LandingRow row) throws SQLException;
+}
@@ -0,0 +1,76 @@
+package com.pipeline.steps;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Writes landing rows to dbo.Landing_Orders through a {@link TableWriter}. Rows are sent as soon as a
+ * batch fills, so callers can stream a file through it without holding every row in memory.
+ */
+class LandingWriter implements LandingSink, AutoCloseable {
+
+    private static final String[] COLUMNS = { "RunId", "OrderId", "CustomerId", "Amount", "OrderDate", "SourceType", "RawPayload" };
+    /** Batched INSERTs send Amount as text and let SQL Server convert it, as PullStep always has. */
+    private static final int[] BATCH_TYPES = { Types.NVARCHAR, Types.NVARCHAR, Types.NVARCHAR, Types.NVARCHAR, Types.NVARCHAR, Types.NVARCHAR, Types.NVARCHAR };
+    /** Bulk copy needs values of the destination type, so Amount is converted to FLOAT here. */
+    private static final int[] BULK_TYPES = { Types.NVARCHAR, Types.NVARCHAR, Types.NVARCHAR, Types.DOUBLE, Types.NVARCHAR, Types.NVARCHAR, Types.NVARCHAR };
+
+    private final TableWriter table;
+
+    LandingWriter(Connection conn, String runId, int stepNumber) throws SQLException {
+        this.table = TableWriter.open(conn, "dbo.Landing_Orders", COLUMNS,
+            TableWriter.useBulkCopy(conn) ? BULK_TYPES : BATCH_TYPES, runId, stepNumber);
+    }
+
+    /** Commits through the checkpoint as batches are sent. */
+    void setCheckpoint(StepCheckpoint checkpoint) {
+        table.setCheckpoint(checkpoint);
+    }
+
+    /** Total row count reported with progress, when the reader knows it up front. */
+    void setTotal(Integer total) {
+        table.setTotal(total);
+    }
+
+    @Override
+    public void add(LandingRow r) throws SQLException {
+        Object amount = table.isBulk() ? toFloat(r.amount) : r.amount;
+        table.add(r.runId, r.orderId, r.customerId, amount, r.orderDate, r.sourceType, r.rawPayload);
+    }
+
+    /** Sends the last partial batch and reports final progress. Returns the number of rows written. */
+    int finish() throws SQLException {
+        return table.finish();
+    }
+
+    int count() {
+        return table.count();
+    }
+
+    /**
+     * Same result as SQL Server's nvarchar-to-float conversion for the batched path: null stays null,
+     * blank becomes 0, anything that is not a finite plain number fails the step.
+     */
+    static Double toFloat(String amount) throws SQLException {
+        if (amount == null) return null;
+        String a = amount.trim();
+        if (a.isEmpty()) return 0d;
+        char last = a.charAt(a.length() - 1);
+        if (Character.isLetter(last) || a.indexOf('x') >= 0 || a.indexOf('X') >= 0) {
+            throw new SQLException("Error converting data type nvarchar to float: '" + amount + "'");
+        }
+        try {
+            double d = Double.parseDouble(a);
+            if (!Double.isFinite(d)) throw new NumberFormatException();
+            return d;
+        } catch (NumberFormatException e) {
+            throw new SQLException("Error converting data type nvarchar to float: '" + amount + "'");
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        table.close();
+    }
+}
@@ -0,0 +1,197 @@
+package com.pipeline.steps;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * CSV reader over a memory-mapped file. Records are split on raw bytes and a field is only decoded
+ * (UTF-8) when {@link #field(int)} asks for it, so columns Landing_Orders does not store are never
+ * turned into Strings and the file never passes through the Java heap as a whole.
+ * <p>
+ * The file is mapped in windows of at most {@link #WINDOW_SIZE} bytes, so files larger than 2 GB work too.
+ * Reads the records that start in [start, end); a record that starts before end is read to its end. A
+ * window only reaches TAIL_SIZE past end, and grows when the last record is longer, so a reader over a
+ * small range maps about that range rather than a whole window.
+ * Quoting and line-ending rules match {@link CsvReader}, and so does the encoding policy: a field that
+ * is not valid UTF-8 throws MalformedInputException instead of being decoded with replacement characters.
+ */
+final class MappedCsvReader implements CsvSource {
+
+    static final int WINDOW_SIZE = 256 * 1024 * 1024;
+    /** Mapped past end for the record that straddles it. */
+    private static final int TAIL_SIZE = 64 * 1024;
+
+    private final FileChannel ch;
+    private final long fileSize;
+    private final long end;
+
+    private MappedByteBuffer win;
+    private long winStart;
+    private int winLen;
+    /** Start of the current record, relative to the window. */
+    private int recPos;
+    /** Start of the next record, as a file offset. */
+    private long nextRecord;
+
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private boolean[] quoted = new boolean[16];
+    private int fieldCount;
+    private byte[] scratch = new byte[256];
+    private final CharsetDecoder utf8 = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPORT)
+        .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+    MappedCsvReader(FileChannel ch, long start, long end) throws IOException {
+        this.ch = ch;
+        this.fileSize = ch.size();
+        this.end = Math.min(end, fileSize);
+        this.nextRecord = start;
+        if (start == 0 && fileSize >= 3) {
+            map(0);
+            if (win.get(0) == (byte) 0xEF && win.get(1) == (byte) 0xBB && win.get(2) == (byte) 0xBF) nextRecord = 3;
+        }
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        fieldCount = 0;
+        if (nextRecord >= end) return false;
+        if (win == null || nextRecord < winStart || nextRecord >= winStart + winLen) map(nextRecord);
+        recPos = (int) (nextRecord - winStart);
+        int pos = recPos;
+        int fieldStart = 0;
+        boolean fieldQuoted = false;
+        boolean inQuotes = false;
+        while (true) {
+            if (pos + 1 >= winLen && winStart + winLen < fileSize) {
+                // Under two bytes left in this window but not at end of file: remap from the record start so
+                // the rest of the record plus one byte of lookahead is mapped, doubling the window when the
+                // record already starts it. Field offsets are record-relative.
+                if (recPos == 0) {
+                    if (winLen >= WINDOW_SIZE) throw new IOException("CSV record at offset " + winStart + " is larger than " + WINDOW_SIZE + " bytes");
+                    map(winStart, winLen * 2L);
+                } else {
+                    pos -= recPos;
+                    map(winStart + recPos);
+                    recPos = 0;
+                }
+            }
+            if (pos >= winLen) break;
+            byte b = win.get(pos++);
+            if (inQuotes) {
+                if (b == '"') {
+                    if (pos < winLen && win.get(pos) == '"') pos++;
+                    else inQuotes = false;
+                }
+            } else if (b == ',') {
+                endField(fieldStart, pos - 1 - recPos, fieldQuoted);
+                fieldStart = pos - recPos;
+                fieldQuoted = false;
+            } else if (b == '\n' || b == '\r') {
+                endField(fieldStart, pos - 1 - recPos, fieldQuoted);
+                if (b == '\r' && pos < winLen && win.get(pos) == '\n') pos++;
+                nextRecord = winStart + pos;
+                return true;
+            } else if (b == '"') {
+                inQuotes = true;
+                fieldQuoted = true;
+            }
+        }
+        endField(fieldStart, pos - recPos, fieldQuoted);
+        nextRecord = fileSize;
+        return true;
+    }
+
+    /** File offset where the next record starts. */
+    long position() {
+        return nextRecord;
+    }
+
+    @Override
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    @Override
+    public String field(int i) throws CharacterCodingException {
+        if (i < 0 || i >= fieldCount) return null;
+        int s = recPos + starts[i];
+        int e = recPos + ends[i];
+        int len;
+        if (quoted[i]) {
+            len = unescape(s, e);
+            int ls = 0;
+            while (ls < len && (scratch[ls] & 0xFF) <= ' ') ls++;
+            while (len > ls && (scratch[len - 1] & 0xFF) <= ' ') len--;
+            return ls == len ? "" : decode(ls, len - ls);
+        }
+        while (s < e && (win.get(s) & 0xFF) <= ' ') s++;
+        while (e > s && (win.get(e - 1) & 0xFF) <= ' ') e--;
+        len = e - s;
+        if (len == 0) return "";
+        if (scratch.length < len) scratch = new byte[Math.max(len, scratch.length * 2)];
+        for (int k = 0; k < len; k++) scratch[k] = win.get(s + k);
+        return decode(0, len);
+    }
+
+    private String decode(int off, int len) throws CharacterCodingException {
+        return utf8.decode(ByteBuffer.wrap(scratch, off, len)).toString();
+    }
+
+    /** Copies a quoted field into scratch, dropping quote characters and collapsing "" to ". Returns the length. */
+    private int unescape(int s, int e) {
+        if (scratch.length < e - s) scratch = new byte[Math.max(e - s, scratch.length * 2)];
+        int n = 0;
+        boolean inQuotes = false;
+        for (int p = s; p < e; p++) {
+            byte b = win.get(p);
+            if (b != '"') {
+                scratch[n++] = b;
+            } else if (!inQuotes) {
+                inQuotes = true;
+            } else if (p + 1 < e && win.get(p + 1) == '"') {
+                scratch[n++] = b;
+                p++;
+            } else {
+                inQuotes = false;
+            }
+        }
+        return n;
+    }
+
+    private void endField(int start, int stop, boolean isQuoted) {
+        if (fieldCount == starts.length) {
+            starts = Arrays.copyOf(starts, fieldCount * 2);
+            ends = Arrays.copyOf(ends, fieldCount * 2);
+            quoted = Arrays.copyOf(quoted, fieldCount * 2);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = stop;
+        quoted[fieldCount] = isQuoted;
+        fieldCount++;
+    }
+
+    private void map(long offset) throws IOException {
+        map(offset, Math.max(0, end - offset) + TAIL_SIZE);
+    }
+
+    private void map(long offset, long length) throws IOException {
+        winStart = offset;
+        winLen = (int) Math.min(Math.min(WINDOW_SIZE, length), fileSize - offset);
+        win = ch.map(FileChannel.MapMode.READ_ONLY, offset, winLen);
+    }
+
+    /** The channel belongs to the caller. */
+    @Override
+    public void close() {
+        win = null;
+    }
+}
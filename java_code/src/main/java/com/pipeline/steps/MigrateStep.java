@@ -1,40 +1,61 @@
 package com.pipeline.steps;
 
+import com.pipeline.PipelineConfig;
+import com.pipeline.RunCancellation;
 import com.pipeline.StepProgress;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class MigrateStep {
 
     /** SQL Server MERGE for upsert by OrderId. */
-    private static final String MERGE_SQL =
+    static final String MERGE_SQL =
         "MERGE dbo.Target_Orders AS t " +
         "USING (SELECT ? AS OrderId, ? AS CustomerId, ? AS Amount, ? AS OrderDate, ? AS AmountCategory) AS s " +
         "ON t.OrderId = s.OrderId " +
         "WHEN MATCHED THEN UPDATE SET CustomerId = s.CustomerId, Amount = s.Amount, OrderDate = s.OrderDate, AmountCategory = s.AmountCategory, MigratedAt = SYSDATETIMEOFFSET() " +
         "WHEN NOT MATCHED THEN INSERT (OrderId, CustomerId, Amount, OrderDate, AmountCategory, MigratedAt) VALUES (s.OrderId, s.CustomerId, s.Amount, s.OrderDate, s.AmountCategory, SYSDATETIMEOFFSET());";
 
-    private static final int BATCH_SIZE = 2000;
+    /**
+     * Set-based MERGE of one Id range of a run's transformed rows. A run can hold the same OrderId more
+     * than once; the row-at-a-time MERGE lets the last one win, so only the highest Id per OrderId is kept.
+     */
+    private static final String SET_MERGE_SQL =
+        setMergeSql("dbo.Staging_Orders_Transformed WHERE RunId = ? AND Id >= ? AND Id < ?", "Id");
 
-    public static int run(Connection conn, String runId, int stepNumber) throws SQLException {
-        Integer total = null;
+    static final int BATCH_SIZE = 2000;
+
+    /**
+     * Upserts the run's transformed rows with an Id past the checkpoint, in Id order. MERGE is idempotent,
+     * so rows of a batch that was sent but not committed are simply merged again on resume.
+     */
+    public static int run(Connection conn, String runId, int stepNumber, StepCheckpoint checkpoint) throws SQLException {
+        int total = 0;
         try (PreparedStatement cnt = conn.prepareStatement("SELECT COUNT(*) FROM dbo.Staging_Orders_Transformed WHERE RunId = ?")) {
             cnt.setString(1, runId);
             try (ResultSet rs = cnt.executeQuery()) {
                 if (rs.next()) total = rs.getInt(1);
             }
         }
-        String sel = "SELECT OrderId, CustomerId, Amount, OrderDate, AmountCategory FROM dbo.Staging_Orders_Transformed WHERE RunId = ?";
-        int count = 0;
-        try (PreparedStatement select = conn.prepareStatement(sel);
-             PreparedStatement merge = conn.prepareStatement(MERGE_SQL)) {
+        if ("set".equals(PipelineConfig.getMigrateMode())) {
+            return runSetBased(conn, runId, stepNumber, total, PipelineConfig.getMigrateChunkRows(), checkpoint);
+        }
+        String sel = "SELECT Id, OrderId, CustomerId, Amount, OrderDate, AmountCategory FROM dbo.Staging_Orders_Transformed " +
+            "WHERE RunId = ? AND Id > ? ORDER BY Id";
+        int count = checkpoint.rows();
+        try (PreparedStatement select = RunCancellation.track(runId, conn.prepareStatement(sel));
+             PreparedStatement merge = RunCancellation.track(runId, conn.prepareStatement(MERGE_SQL))) {
             select.setString(1, runId);
+            select.setLong(2, checkpoint.key());
             try (ResultSet rs = select.executeQuery()) {
                 int batchCount = 0;
                 while (rs.next()) {
+                    checkpoint.at(rs.getLong("Id"));
                     merge.setString(1, rs.getString("OrderId"));
                     merge.setString(2, rs.getString("CustomerId"));
                     merge.setDouble(3, rs.getDouble("Amount"));
@@ -43,14 +64,20 @@ public class MigrateStep {
                     merge.addBatch();
                     count++;
                     if (++batchCount >= BATCH_SIZE) {
+                        RunCancellation.check(runId);
                         merge.executeBatch();
                         batchCount = 0;
+                        checkpoint.flushed(count);
                         if (StepProgress.shouldUpdate(count)) {
                             StepProgress.update(runId, stepNumber, count, total);
                         }
                     }
                 }
-                if (batchCount > 0) merge.executeBatch();
+                if (batchCount > 0) {
+                    RunCancellation.check(runId);
+                    merge.executeBatch();
+                }
+                checkpoint.finish(count);
                 if (StepProgress.shouldUpdate(count)) {
                     StepProgress.update(runId, stepNumber, count, total);
                 }
@@ -58,4 +85,60 @@ public class MigrateStep {
         }
         return count;
     }
+
+    /**
+     * MIGRATE_MODE=set: the transformed rows are already on the server, so each chunk of chunkRows rows
+     * is upserted with one MERGE instead of one MERGE per row. Chunks run in Id order, which keeps the
+     * last-row-wins result across chunks. Returns the number of source rows, like the row-at-a-time path.
+     */
+    private static int runSetBased(Connection conn, String runId, int stepNumber, int total, int chunkRows, StepCheckpoint checkpoint) throws SQLException {
+        List<Integer> starts = chunkStarts(conn, runId, chunkRows, checkpoint.key());
+        int count = checkpoint.rows();
+        try (PreparedStatement merge = RunCancellation.track(runId, conn.prepareStatement(SET_MERGE_SQL))) {
+            for (int i = 0; i < starts.size(); i++) {
+                RunCancellation.check(runId);
+                merge.setString(1, runId);
+                int end = i + 1 < starts.size() ? starts.get(i + 1) : Integer.MAX_VALUE;
+                merge.setInt(2, starts.get(i));
+                merge.setInt(3, end);
+                merge.executeUpdate();
+                count += Math.min(chunkRows, total - count);
+                checkpoint.at(end - 1L);
+                checkpoint.flushed(count);
+                StepProgress.update(runId, stepNumber, count, total);
+            }
+            checkpoint.finish(count);
+        }
+        return count;
+    }
+
+    /** First Id of every chunkRows-row slice of the run's rows with an Id past afterId, in Id order. */
+    private static List<Integer> chunkStarts(Connection conn, String runId, int chunkRows, long afterId) throws SQLException {
+        String sql = "SELECT Id FROM (SELECT Id, ROW_NUMBER() OVER (ORDER BY Id) AS rn " +
+            "FROM dbo.Staging_Orders_Transformed WHERE RunId = ? AND Id > ?) r WHERE (rn - 1) % ? = 0 ORDER BY Id";
+        List<Integer> starts = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, runId);
+            ps.setLong(2, afterId);
+            ps.setInt(3, chunkRows);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) starts.add(rs.getInt(1));
+            }
+        }
+        return starts;
+    }
+
+    /**
+     * MERGE into Target_Orders from the rows of source (a table plus optional WHERE clause), keeping the
+     * last row per OrderId by orderColumn.
+     */
+    static String setMergeSql(String source, String orderColumn) {
+        return "MERGE dbo.Target_Orders AS t " +
+            "USING (SELECT OrderId, CustomerId, Amount, OrderDate, AmountCategory FROM (" +
+            "SELECT OrderId, CustomerId, Amount, OrderDate, AmountCategory, ROW_NUMBER() OVER (PARTITION BY OrderId ORDER BY " + orderColumn + " DESC) AS rn " +
+            "FROM " + source + ") d WHERE rn = 1) AS s " +
+            "ON t.OrderId = s.OrderId " +
+            "WHEN MATCHED THEN UPDATE SET CustomerId = s.CustomerId, Amount = s.Amount, OrderDate = s.OrderDate, AmountCategory = s.AmountCategory, MigratedAt = SYSDATETIMEOFFSET() " +
+            "WHEN NOT MATCHED THEN INSERT (OrderId, CustomerId, Amount, OrderDate, AmountCategory, MigratedAt) VALUES (s.OrderId, s.CustomerId, s.Amount, s.OrderDate, s.AmountCategory, SYSDATETIMEOFFSET());";
+    }
 }
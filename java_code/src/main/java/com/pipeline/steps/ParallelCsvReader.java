@@ -0,0 +1,203 @@
+package com.pipeline.steps;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parses one CSV file on several cores. The file is cut into byte ranges that end on record
+ * boundaries, each range is parsed with its own {@link MappedCsvReader} on a fork-join pool, and the
+ * parsed chunks are handed to a single sink on the calling thread (JDBC connections are not shared).
+ * <p>
+ * Ordered mode delivers chunks in file order, so Landing_Orders gets exactly the sequence the
+ * sequential readers produce. Unordered mode delivers each chunk as soon as it is parsed: same row
+ * set, different insert order. At most two chunks per worker are parsed ahead of the sink, which
+ * bounds memory regardless of file size.
+ */
+final class ParallelCsvReader {
+
+    static final int CHUNK_SIZE = 8 * 1024 * 1024;
+    /** Reading the header stops after the record that starts at 0, or at 3 after a byte order mark. */
+    private static final long HEADER_RANGE = 4;
+
+    private ParallelCsvReader() {}
+
+    static void read(Path p, String runId, int parallelism, boolean ordered, LandingSink sink) throws IOException, SQLException {
+        read(p, runId, parallelism, ordered, sink, CHUNK_SIZE);
+    }
+
+    /** As {@link #read(Path, String, int, boolean, LandingSink)} with ranges of about chunkSize bytes (tests cut small files). */
+    static void read(Path p, String runId, int parallelism, boolean ordered, LandingSink sink, int chunkSize) throws IOException, SQLException {
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            PullStep.CsvColumns cols;
+            long dataStart;
+            try (MappedCsvReader header = new MappedCsvReader(ch, 0, HEADER_RANGE)) {
+                if (!header.next()) return;
+                cols = new PullStep.CsvColumns(header.fields());
+                dataStart = header.position();
+            }
+            long[] bounds = splitOnRecords(ch, dataStart, Math.max(1, parallelism), chunkSize);
+            ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+            try {
+                deliver(ch, cols, runId, bounds, pool, Math.max(1, parallelism) * 2, ordered, sink);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private static void deliver(FileChannel ch, PullStep.CsvColumns cols, String runId, long[] bounds,
+                                ForkJoinPool pool, int maxInFlight, boolean ordered, LandingSink sink) throws IOException, SQLException {
+        int chunks = bounds.length - 1;
+        CompletionService<List<LandingRow>> done = new ExecutorCompletionService<>(pool);
+        Deque<Future<List<LandingRow>>> pending = new ArrayDeque<>();
+        int submitted = 0;
+        int delivered = 0;
+        try {
+            while (delivered < chunks) {
+                while (submitted < chunks && submitted - delivered < maxInFlight) {
+                    long start = bounds[submitted];
+                    long end = bounds[submitted + 1];
+                    Callable<List<LandingRow>> task = () -> parseRange(ch, cols, runId, start, end);
+                    pending.add(ordered ? pool.submit(task) : done.submit(task));
+                    submitted++;
+                }
+                Future<List<LandingRow>> next = ordered ? pending.poll() : done.take();
+                if (!ordered) pending.remove(next);
+                for (LandingRow row : next.get()) sink.add(row);
+                delivered++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing " + runId, e);
+        } catch (ExecutionException e) {
+            throw ioCause(e);
+        } finally {
+            for (Future<List<LandingRow>> f : pending) f.cancel(true);
+        }
+    }
+
+    private static List<LandingRow> parseRange(FileChannel ch, PullStep.CsvColumns cols, String runId, long start, long end) throws IOException {
+        List<LandingRow> rows = new ArrayList<>();
+        try (MappedCsvReader csv = new MappedCsvReader(ch, start, end)) {
+            while (csv.next()) rows.add(cols.fill(csv, runId, new LandingRow()));
+        }
+        return rows;
+    }
+
+    /**
+     * Range boundaries (file offsets, first = dataStart, last = file size) that each fall at the start of
+     * a record. Quote characters are counted per naive range in parallel; their running parity tells
+     * whether a naive cut lands inside a quoted field, in which case the cut moves forward to the first
+     * line break outside quotes. Doubled quotes ("") flip the parity twice, so they need no special case.
+     */
+    static long[] splitOnRecords(FileChannel ch, long dataStart, int parallelism, int chunkSize) throws IOException {
+        long size = ch.size();
+        if (dataStart >= size) return new long[] { dataStart, dataStart };
+        int n = (int) Math.max(1, Math.min(Integer.MAX_VALUE - 1, (size - dataStart + chunkSize - 1) / chunkSize));
+        long[] naive = new long[n + 1];
+        for (int i = 0; i < n; i++) naive[i] = dataStart + (long) i * chunkSize;
+        naive[n] = size;
+
+        long[] quotes = new long[n];
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Future<Long>> counts = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                long s = naive[i];
+                long e = naive[i + 1];
+                counts.add(pool.submit(() -> countQuotes(ch, s, e)));
+            }
+            for (int i = 0; i < n; i++) quotes[i] = counts.get(i).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while splitting file", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(dataStart);
+        long quotesBefore = 0;
+        for (int i = 1; i < n; i++) {
+            quotesBefore += quotes[i - 1];
+            long last = bounds.get(bounds.size() - 1);
+            if (naive[i] <= last) continue;
+            long cut = nextRecordStart(ch, naive[i], (quotesBefore & 1) == 1, size);
+            if (cut > last && cut < size) bounds.add(cut);
+        }
+        bounds.add(size);
+        long[] out = new long[bounds.size()];
+        for (int i = 0; i < out.length; i++) out[i] = bounds.get(i);
+        return out;
+    }
+
+    /**
+     * First record start at or after the line break following offset, given whether offset is inside
+     * quotes. A cut exactly at a record start is moved to the next one, which is harmless.
+     */
+    private static long nextRecordStart(FileChannel ch, long offset, boolean inQuotes, long size) throws IOException {
+        long pos = offset;
+        while (pos < size) {
+            int len = (int) Math.min(CHUNK_SIZE, size - pos);
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+            for (int i = 0; i < len; i++) {
+                byte b = buf.get(i);
+                if (b == '"') {
+                    inQuotes = !inQuotes;
+                } else if (!inQuotes && (b == '\n' || b == '\r')) {
+                    long next = pos + i + 1;
+                    if (b == '\r') {
+                        if (i + 1 < len) {
+                            if (buf.get(i + 1) == '\n') next++;
+                        } else if (next < size) {
+                            MappedByteBuffer one = ch.map(FileChannel.MapMode.READ_ONLY, next, 1);
+                            if (one.get(0) == '\n') next++;
+                        }
+                    }
+                    return next;
+                }
+            }
+            pos += len;
+        }
+        return size;
+    }
+
+    /** Fork-join tasks wrap checked exceptions, so look down the cause chain for the original IOException. */
+    private static IOException ioCause(ExecutionException e) {
+        for (Throwable t = e.getCause(); t != null; t = t.getCause()) {
+            if (t instanceof IOException) return (IOException) t;
+        }
+        return new IOException(e.getCause());
+    }
+
+    private static long countQuotes(FileChannel ch, long start, long end) {
+        try {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            int len = (int) (end - start);
+            long q = 0;
+            for (int i = 0; i < len; i++) {
+                if (buf.get(i) == '"') q++;
+            }
+            return q;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
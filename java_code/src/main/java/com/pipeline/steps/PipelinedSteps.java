@@ -0,0 +1,288 @@
+package com.pipeline.steps;
+
+import com.pipeline.PipelineConfig;
+import com.pipeline.RunCancellation;
+import com.pipeline.StepProgress;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * PIPELINE_MODE=pipelined: the four steps run at the same time, each on its own worker thread and
+ * connection, and each still writes its own table. Rows flow downstream in batches through bounded
+ * queues, so a slow stage holds back the ones before it instead of letting rows pile up in memory.
+ * A stage commits when it has written its last row; when any stage fails or the run is cancelled,
+ * every stage still running stops at its next batch and rolls back.
+ */
+public final class PipelinedSteps implements AutoCloseable {
+
+    /**
+     * Four threads per run the run queue may execute at once, so every stage of an admitted run starts
+     * right away (a stage left waiting would stall the stages feeding it). Idle threads time out.
+     */
+    private static final ExecutorService STAGES = stagePool(PipelineConfig.getRunMaxConcurrent() * 4);
+    private static final long POLL_MS = 100;
+
+    private final String runId;
+    private final Callable<Connection> connections;
+    private final BooleanSupplier cancelled;
+    private final int queueBatches;
+    private final List<Future<Integer>> stages = new ArrayList<>(4);
+    private volatile Throwable failure;
+    private volatile boolean stopped;
+
+    private PipelinedSteps(String runId, Callable<Connection> connections, BooleanSupplier cancelled, int queueBatches) {
+        this.runId = runId;
+        this.connections = connections;
+        this.cancelled = cancelled;
+        this.queueBatches = queueBatches;
+    }
+
+    /**
+     * Starts all four stages. connections opens one connection per stage; cancelled is polled between
+     * batches. Progress goes to the same database as the calling thread's StepProgress.
+     */
+    public static PipelinedSteps start(String runId, String filePath, Callable<Connection> connections, BooleanSupplier cancelled) {
+        PipelinedSteps p = new PipelinedSteps(runId, connections, cancelled, PipelineConfig.getPipelineQueueBatches());
+        Pipe<LandingRow> landed = p.new Pipe<>();
+        Pipe<Object[]> extracted = p.new Pipe<>();
+        Pipe<Object[]> transformed = p.new Pipe<>();
+        p.submit(1, conn -> p.pull(conn, filePath, landed));
+        p.submit(2, conn -> p.extract(conn, landed, extracted));
+        p.submit(3, conn -> p.transform(conn, extracted, transformed));
+        p.submit(4, conn -> p.migrate(conn, transformed));
+        return p;
+    }
+
+    /**
+     * Waits for a stage (1-4) to commit and returns its row count. Stages finish in order, since each
+     * one ends only after the one before it. Throws the first failure of any stage.
+     */
+    public int await(int stepNumber) throws Exception {
+        try {
+            return stages.get(stepNumber - 1).get();
+        } catch (ExecutionException e) {
+            Throwable t = failure != null ? failure : e.getCause();
+            if (t instanceof Exception) throw (Exception) t;
+            throw new ExecutionException(t);
+        }
+    }
+
+    /** Stops any stage still running and waits for it to roll back. */
+    @Override
+    public void close() {
+        stopped = true;
+        for (Future<Integer> f : stages) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException ignored) {}
+        }
+    }
+
+    private static ExecutorService stagePool(int threads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "pipeline-stage");
+            t.setDaemon(true);
+            return t;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    @FunctionalInterface
+    private interface StageBody {
+        int run(Connection conn) throws Exception;
+    }
+
+    private void submit(int stepNumber, StageBody body) {
+        stages.add(STAGES.submit(StepProgress.propagate(() -> {
+            try (Connection conn = connections.call()) {
+                conn.setAutoCommit(false);
+                try {
+                    int rows = body.run(conn);
+                    conn.commit();
+                    return rows;
+                } catch (Exception | Error e) {
+                    fail(e);
+                    try {
+                        conn.rollback();
+                    } catch (SQLException ignored) {}
+                    throw e;
+                }
+            } catch (Exception | Error e) {
+                fail(e);
+                throw e;
+            }
+        })));
+    }
+
+    private void fail(Throwable t) {
+        if (failure == null && !(t instanceof StoppedException)) failure = t;
+        stopped = true;
+    }
+
+    private int pull(Connection conn, String filePath, Pipe<LandingRow> out) throws Exception {
+        try (LandingWriter writer = new LandingWriter(conn, runId, 1)) {
+            PullStep.read(filePath, runId, row -> {
+                writer.add(row);
+                LandingRow copy = new LandingRow();
+                copy.runId = row.runId;
+                copy.orderId = row.orderId;
+                copy.customerId = row.customerId;
+                copy.amount = row.amount;
+                copy.orderDate = row.orderDate;
+                copy.sourceType = row.sourceType;
+                copy.rawPayload = row.rawPayload;
+                out.add(copy);
+            });
+            int rows = writer.finish();
+            out.close();
+            return rows;
+        }
+    }
+
+    private int extract(Connection conn, Pipe<LandingRow> in, Pipe<Object[]> out) throws Exception {
+        try (TableWriter writer = TableWriter.open(conn, "dbo.Staging_Orders", ExtractStep.COLUMNS, ExtractStep.TYPES, runId, 2)) {
+            for (List<LandingRow> batch; (batch = in.take()) != null; ) {
+                for (LandingRow row : batch) {
+                    String orderId = ExtractStep.orderId(row.orderId);
+                    if (orderId == null) continue;
+                    Object[] values = { runId, orderId, ExtractStep.customerId(row.customerId),
+                        ExtractStep.amount(row.amount), ExtractStep.orderDate(row.orderDate) };
+                    writer.add(values);
+                    out.add(values);
+                }
+            }
+            int rows = writer.finish();
+            out.close();
+            return rows;
+        }
+    }
+
+    private int transform(Connection conn, Pipe<Object[]> in, Pipe<Object[]> out) throws Exception {
+        try (TableWriter writer = TableWriter.open(conn, "dbo.Staging_Orders_Transformed", TransformStep.COLUMNS, TransformStep.TYPES, runId, 3)) {
+            for (List<Object[]> batch; (batch = in.take()) != null; ) {
+                for (Object[] s : batch) {
+                    String category = TransformStep.category((Double) s[3]);
+                    writer.add(s[0], s[1], s[2], s[3], s[4], category);
+                    out.add(new Object[] { s[1], s[2], s[3], s[4], category });
+                }
+            }
+            int rows = writer.finish();
+            out.close();
+            return rows;
+        }
+    }
+
+    /** Same upsert as MigrateStep for the configured MIGRATE_MODE; rows arrive as (OrderId, CustomerId, Amount, OrderDate, AmountCategory). */
+    private int migrate(Connection conn, Pipe<Object[]> in) throws Exception {
+        if ("set".equals(PipelineConfig.getMigrateMode())) {
+            try (TempTarget target = TempTarget.open(conn, runId, 4)) {
+                for (List<Object[]> batch; (batch = in.take()) != null; ) {
+                    for (Object[] t : batch) target.add((String) t[0], (String) t[1], (Double) t[2], (String) t[3], (String) t[4]);
+                }
+                return target.merge();
+            }
+        }
+        int count = 0;
+        try (PreparedStatement merge = RunCancellation.track(runId, conn.prepareStatement(MigrateStep.MERGE_SQL))) {
+            for (List<Object[]> batch; (batch = in.take()) != null; ) {
+                for (Object[] t : batch) {
+                    merge.setString(1, (String) t[0]);
+                    merge.setString(2, (String) t[1]);
+                    merge.setDouble(3, (Double) t[2]);
+                    merge.setString(4, (String) t[3]);
+                    merge.setString(5, (String) t[4]);
+                    merge.addBatch();
+                    count++;
+                    if (count % MigrateStep.BATCH_SIZE == 0) {
+                        merge.executeBatch();
+                        if (StepProgress.shouldUpdate(count)) StepProgress.update(runId, 4, count, null);
+                    }
+                }
+            }
+            if (count % MigrateStep.BATCH_SIZE != 0) merge.executeBatch();
+            if (StepProgress.shouldUpdate(count)) StepProgress.update(runId, 4, count, null);
+        }
+        return count;
+    }
+
+    /** Thrown in a stage that stops because another stage failed or the run was cancelled. */
+    private static final class StoppedException extends SQLException {
+        private static final long serialVersionUID = 1L;
+
+        StoppedException(String message) {
+            super(message);
+        }
+    }
+
+    /** Bounded queue of row batches between two stages. An empty batch marks the end. */
+    private final class Pipe<T> {
+        private final List<T> end = Collections.emptyList();
+        private final BlockingQueue<List<T>> queue = new ArrayBlockingQueue<>(queueBatches);
+        private List<T> batch = new ArrayList<>(TableWriter.BATCH_SIZE);
+
+        void add(T row) throws SQLException {
+            batch.add(row);
+            if (batch.size() >= TableWriter.BATCH_SIZE) {
+                send(batch);
+                batch = new ArrayList<>(TableWriter.BATCH_SIZE);
+            }
+        }
+
+        void close() throws SQLException {
+            if (!batch.isEmpty()) send(batch);
+            send(end);
+        }
+
+        /** Next batch, or null once the upstream stage has closed the pipe. */
+        List<T> take() throws SQLException {
+            try {
+                List<T> b;
+                do {
+                    checkStopped();
+                } while ((b = queue.poll(POLL_MS, TimeUnit.MILLISECONDS)) == null);
+                return b == end ? null : b;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new StoppedException("Interrupted");
+            }
+        }
+
+        private void send(List<T> b) throws SQLException {
+            try {
+                do {
+                    checkStopped();
+                } while (!queue.offer(b, POLL_MS, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new StoppedException("Interrupted");
+            }
+        }
+
+        private void checkStopped() throws SQLException {
+            if (cancelled.getAsBoolean()) {
+                stopped = true;
+                throw new StoppedException("Pipeline cancelled by user");
+            }
+            if (stopped) throw new StoppedException("Stopped because another step failed");
+        }
+    }
+}
@@ -1,135 +1,105 @@
 package com.pipeline.steps;
 
-import com.pipeline.Database;
+import com.pipeline.PipelineConfig;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.UUID;
-
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 
 public class PullStep {
 
-    private static final Gson GSON = new Gson();
-
-    public static int run(Connection conn, String runId, String filePath, int stepNumber) throws SQLException, IOException {
+    /**
+     * Loads the file into Landing_Orders. A resumed step skips the file rows an earlier attempt committed;
+     * unordered parallel reads have no stable row order, so they start the step over instead.
+     */
+    public static int run(Connection conn, String runId, String filePath, int stepNumber, StepCheckpoint checkpoint) throws SQLException, IOException {
         if (filePath == null || filePath.isEmpty()) return 0;
+        if ("parallel".equals(PipelineConfig.getPullInputMode()) && !PipelineConfig.isPullParallelOrdered()) {
+            checkpoint.restart("dbo.Landing_Orders");
+        }
+        try (LandingWriter writer = new LandingWriter(conn, runId, stepNumber)) {
+            writer.setCheckpoint(checkpoint);
+            long skip = checkpoint.key();
+            long[] rowNumber = { 0 };
+            read(filePath, runId, row -> {
+                if (++rowNumber[0] <= skip) return;
+                checkpoint.at(rowNumber[0]);
+                writer.add(row);
+            });
+            return writer.finish();
+        }
+    }
+
+    /** Parses a landing file (CSV or JSON, chosen by extension) and hands every row to the sink. */
+    static void read(String filePath, String runId, LandingSink sink) throws SQLException, IOException {
+        if (filePath == null || filePath.isEmpty()) return;
         Path p = Paths.get(filePath);
         String fileName = p.getFileName().toString();
         String ext = fileName.contains(".") ? fileName.substring(fileName.lastIndexOf('.')).toLowerCase() : "";
 
-        List<LandingRow> rows = new ArrayList<>();
         if (".csv".equals(ext)) {
-            List<String> lines = Files.readAllLines(p);
-            if (lines.isEmpty()) return 0;
-            String[] headers = lines.get(0).split(",");
-            for (int i = 1; i < lines.size(); i++) {
-                String[] vals = parseCsvLine(lines.get(i));
-                LandingRow row = new LandingRow();
-                row.runId = runId;
-                row.orderId = getVal(vals, headers, "OrderId", "orderId");
-                row.customerId = getVal(vals, headers, "CustomerId", "customerId");
-                row.amount = getVal(vals, headers, "Amount", "amount");
-                row.orderDate = getVal(vals, headers, "OrderDate", "orderDate");
-                row.sourceType = "CSV";
-                row.rawPayload = null;
-                rows.add(row);
-            }
-        } else if (".json".equals(ext)) {
-            String json = Files.readString(p);
-            List<Map<String, Object>> list = GSON.fromJson(json, new TypeToken<List<Map<String, Object>>>(){}.getType());
-            if (list == null) return 0;
-            for (Map<String, Object> m : list) {
-                LandingRow row = new LandingRow();
-                row.runId = runId;
-                row.orderId = get(m, "OrderId", "orderId");
-                row.customerId = get(m, "CustomerId", "customerId");
-                Object amt = m.get("Amount");
-                if (amt == null) amt = m.get("amount");
-                row.amount = amt != null ? String.valueOf(amt) : null;
-                row.orderDate = get(m, "OrderDate", "orderDate");
-                row.sourceType = "JSON";
-                row.rawPayload = GSON.toJson(m);
-                rows.add(row);
-            }
-        }
-
-        final int batchSize = 2000;
-        final int total = rows.size();
-        String insert = "INSERT INTO dbo.Landing_Orders (RunId, OrderId, CustomerId, Amount, OrderDate, SourceType, RawPayload) VALUES (?,?,?,?,?,?,?)";
-        try (PreparedStatement ps = conn.prepareStatement(insert)) {
-            int n = 0;
-            for (LandingRow r : rows) {
-                ps.setString(1, r.runId);
-                ps.setString(2, r.orderId);
-                ps.setString(3, r.customerId);
-                ps.setString(4, r.amount);
-                ps.setString(5, r.orderDate);
-                ps.setString(6, r.sourceType);
-                ps.setString(7, r.rawPayload);
-                ps.addBatch();
-                n++;
-                if (n % batchSize == 0) {
-                    ps.executeBatch();
-                    if (com.pipeline.StepProgress.shouldUpdate(n)) {
-                        com.pipeline.StepProgress.update(runId, stepNumber, n, total);
-                    }
+            if ("parallel".equals(PipelineConfig.getPullInputMode())) {
+                ParallelCsvReader.read(p, runId, PipelineConfig.getPullParallelism(), PipelineConfig.isPullParallelOrdered(), sink);
+            } else if (useMappedReader(p)) {
+                try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ);
+                     CsvSource csv = new MappedCsvReader(ch, 0, Long.MAX_VALUE)) {
+                    pullCsv(csv, runId, sink);
+                }
+            } else {
+                try (CsvSource csv = new CsvReader(Files.newBufferedReader(p))) {
+                    pullCsv(csv, runId, sink);
                 }
             }
-            if (n % batchSize != 0) ps.executeBatch();
-            if (com.pipeline.StepProgress.shouldUpdate(n)) {
-                com.pipeline.StepProgress.update(runId, stepNumber, n, total);
+        } else if (".json".equals(ext) || ".ndjson".equals(ext) || ".jsonl".equals(ext)) {
+            try (Reader in = Files.newBufferedReader(p)) {
+                new JsonLandingReader(in).read(runId, sink);
             }
         }
-        return rows.size();
     }
 
-    private static String getVal(String[] vals, String[] headers, String... keys) {
-        for (String key : keys) {
-            for (int i = 0; i < headers.length; i++) {
-                if (headers[i].trim().equalsIgnoreCase(key) && i < vals.length) {
-                    String v = vals[i];
-                    return v != null ? v.trim() : null;
-                }
-            }
-        }
-        return null;
+    /** PULL_INPUT_MODE: mmap always maps the file; auto maps it when it is at least PULL_MMAP_THRESHOLD_MB. */
+    private static boolean useMappedReader(Path p) throws IOException {
+        String mode = PipelineConfig.getPullInputMode();
+        if ("mmap".equals(mode)) return true;
+        return "auto".equals(mode) && Files.size(p) >= PipelineConfig.getPullMmapThresholdBytes();
     }
 
-    private static String get(Map<String, Object> m, String... keys) {
-        for (String k : keys) {
-            Object v = m.get(k);
-            if (v != null) return v.toString();
+    /** Reads the CSV record by record and hands each row to the sink, so only one batch is held in memory. */
+    private static void pullCsv(CsvSource csv, String runId, LandingSink sink) throws IOException, SQLException {
+        if (!csv.next()) return;
+        CsvColumns cols = new CsvColumns(csv.fields());
+        LandingRow row = new LandingRow();
+        while (csv.next()) {
+            sink.add(cols.fill(csv, runId, row));
         }
-        return null;
     }
 
-    private static String[] parseCsvLine(String line) {
-        List<String> out = new ArrayList<>();
-        StringBuilder cur = new StringBuilder();
-        boolean inQuotes = false;
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            if (c == '"') inQuotes = !inQuotes;
-            else if ((c == ',' && !inQuotes) || c == '\n') {
-                out.add(cur.toString().trim());
-                cur = new StringBuilder();
-            } else cur.append(c);
+    /** Landing_Orders column positions in a CSV header, resolved once per file. */
+    static final class CsvColumns {
+        private final int orderId, customerId, amount, orderDate;
+
+        CsvColumns(String[] headers) {
+            orderId = CsvReader.columnIndex(headers, "OrderId");
+            customerId = CsvReader.columnIndex(headers, "CustomerId");
+            amount = CsvReader.columnIndex(headers, "Amount");
+            orderDate = CsvReader.columnIndex(headers, "OrderDate");
         }
-        out.add(cur.toString().trim());
-        return out.toArray(new String[0]);
-    }
 
-    static class LandingRow {
-        String runId, orderId, customerId, amount, orderDate, sourceType, rawPayload;
+        LandingRow fill(CsvSource csv, String runId, LandingRow row) throws IOException {
+            row.runId = runId;
+            row.orderId = csv.field(orderId);
+            row.customerId = csv.field(customerId);
+            row.amount = csv.field(amount);
+            row.orderDate = csv.field(orderDate);
+            row.sourceType = "CSV";
+            row.rawPayload = null;
+            return row;
+        }
     }
 }
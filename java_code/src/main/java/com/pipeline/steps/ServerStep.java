@@ -0,0 +1,35 @@
+package com.pipeline.steps;
+
+import com.pipeline.PipelineConfig;
+import com.pipeline.RunCancellation;
+import com.pipeline.StepProgress;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * STEP_EXECUTION=server: runs a step as one stored procedure installed by the schema bootstrap, so the
+ * rows never leave SQL Server. Procedures take @RunId and return the inserted row count in @Rows.
+ */
+final class ServerStep {
+
+    private ServerStep() {}
+
+    static boolean enabled() {
+        return "server".equals(PipelineConfig.getStepExecution());
+    }
+
+    static int call(Connection conn, String procedure, String runId, int stepNumber) throws SQLException {
+        RunCancellation.check(runId);
+        try (CallableStatement cs = RunCancellation.track(runId, conn.prepareCall("{call " + procedure + "(?, ?)}"))) {
+            cs.setString(1, runId);
+            cs.registerOutParameter(2, Types.INTEGER);
+            cs.execute();
+            int rows = cs.getInt(2);
+            StepProgress.update(runId, stepNumber, rows, rows);
+            return rows;
+        }
+    }
+}
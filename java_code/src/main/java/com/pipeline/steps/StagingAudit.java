@@ -0,0 +1,159 @@
+package com.pipeline.steps;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+
+/**
+ * FUSED_STAGING=audit: writes Landing_Orders, Staging_Orders and Staging_Orders_Transformed for a fused
+ * run on a background thread and its own connection, so the audit copy does not slow the main stream.
+ * Rows are handed over in batches through a bounded queue; when the writer falls behind, the producer
+ * waits. The audit commits only when {@link #finish()} is called; closing without it rolls back.
+ */
+final class StagingAudit implements AutoCloseable {
+
+    private static final int QUEUE_BATCHES = 8;
+    private static final List<Entry> END = Collections.emptyList();
+
+    /** One landing row plus, when Extract kept it, its cleansed values and category. */
+    private static final class Entry {
+        final LandingRow landing = new LandingRow();
+        Object[] staging;
+        String category;
+    }
+
+    private final BlockingQueue<List<Entry>> queue = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+    private final Thread thread;
+    private List<Entry> batch = new ArrayList<>(TableWriter.BATCH_SIZE);
+    private volatile Throwable failure;
+    private volatile boolean commit;
+    private boolean closed;
+
+    private StagingAudit(Callable<Connection> connections) {
+        thread = new Thread(() -> drain(connections), "pipeline-audit");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    static StagingAudit start(Callable<Connection> connections) {
+        return new StagingAudit(connections);
+    }
+
+    /** Queues one landing row; staging is null when Extract dropped it. The row is copied. */
+    void add(LandingRow r, Object[] staging, String category) throws SQLException {
+        Entry e = new Entry();
+        e.landing.runId = r.runId;
+        e.landing.orderId = r.orderId;
+        e.landing.customerId = r.customerId;
+        e.landing.amount = r.amount;
+        e.landing.orderDate = r.orderDate;
+        e.landing.sourceType = r.sourceType;
+        e.landing.rawPayload = r.rawPayload;
+        e.staging = staging;
+        e.category = category;
+        batch.add(e);
+        if (batch.size() >= TableWriter.BATCH_SIZE) {
+            put(batch);
+            batch = new ArrayList<>(TableWriter.BATCH_SIZE);
+        }
+    }
+
+    /** Sends the last rows, waits for the writer and commits the audit tables. */
+    void finish() throws SQLException {
+        if (!batch.isEmpty()) put(batch);
+        batch = null;
+        commit = true;
+        stop();
+        if (failure != null) throw new SQLException("Staging audit failed: " + failure.getMessage(), failure);
+    }
+
+    @Override
+    public void close() {
+        if (!closed) stop();
+    }
+
+    private void put(List<Entry> entries) throws SQLException {
+        if (failure != null) throw new SQLException("Staging audit failed: " + failure.getMessage(), failure);
+        try {
+            queue.put(entries);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while queueing staging audit rows", e);
+        }
+    }
+
+    private void stop() {
+        closed = true;
+        try {
+            queue.put(END);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Writer thread: after a failure it keeps taking batches (and drops them) so the producer never blocks. */
+    private void drain(Callable<Connection> connections) {
+        Connection conn = null;
+        LandingWriter landing = null;
+        TableWriter staging = null;
+        TableWriter transformed = null;
+        try {
+            conn = connections.call();
+            conn.setAutoCommit(false);
+            // A null runId turns off StepProgress reporting; the fused run reports its own progress.
+            landing = new LandingWriter(conn, null, 0);
+            staging = TableWriter.open(conn, "dbo.Staging_Orders", ExtractStep.COLUMNS, ExtractStep.TYPES, null, 0);
+            transformed = TableWriter.open(conn, "dbo.Staging_Orders_Transformed", TransformStep.COLUMNS, TransformStep.TYPES, null, 0);
+        } catch (Throwable t) {
+            failure = t;
+        }
+        try {
+            while (true) {
+                List<Entry> entries = queue.take();
+                if (entries == END) break;
+                if (failure != null) continue;
+                try {
+                    for (Entry e : entries) {
+                        landing.add(e.landing);
+                        if (e.staging == null) continue;
+                        staging.add(e.staging);
+                        Object[] t = new Object[e.staging.length + 1];
+                        System.arraycopy(e.staging, 0, t, 0, e.staging.length);
+                        t[e.staging.length] = e.category;
+                        transformed.add(t);
+                    }
+                } catch (Throwable t) {
+                    failure = t;
+                }
+            }
+            if (failure == null && commit) {
+                landing.finish();
+                staging.finish();
+                transformed.finish();
+                conn.commit();
+            } else if (conn != null) {
+                conn.rollback();
+            }
+        } catch (Throwable t) {
+            if (failure == null) failure = t;
+        } finally {
+            closeQuietly(landing);
+            closeQuietly(staging);
+            closeQuietly(transformed);
+            closeQuietly(conn);
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable c) {
+        if (c == null) return;
+        try {
+            c.close();
+        } catch (Exception ignored) {}
+    }
+}
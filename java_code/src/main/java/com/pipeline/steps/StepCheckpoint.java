@@ -0,0 +1,128 @@
+package com.pipeline.steps;
+
+import com.pipeline.PipelineConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Resume position of one step of a run, kept in dbo.StepCheckpoints. A step reports the key of each
+ * source row it handles with {@link #at} (landing file row number for Pull, source table Id for the
+ * others), in increasing key order, and calls {@link #flushed} after every batch it has sent. Every
+ * CHECKPOINT_ROWS rows the position is saved and the step's transaction committed with it, so a resumed
+ * run continues after the last committed batch instead of from the start of the step.
+ */
+public final class StepCheckpoint {
+
+    private static final String SAVE_SQL =
+        "MERGE dbo.StepCheckpoints AS t " +
+        "USING (SELECT ? AS RunId, ? AS StepNumber) AS s ON t.RunId = s.RunId AND t.StepNumber = s.StepNumber " +
+        "WHEN MATCHED THEN UPDATE SET LastKey = ?, RowsDone = ?, UpdatedAt = SYSUTCDATETIME() " +
+        "WHEN NOT MATCHED THEN INSERT (RunId, StepNumber, LastKey, RowsDone) VALUES (s.RunId, s.StepNumber, ?, ?);";
+
+    private final Connection conn;
+    private final String runId;
+    private final int stepNumber;
+    private final int interval;
+    private long startKey;
+    private int startRows;
+    private long key;
+    private int rows;
+    private int savedRows;
+
+    private StepCheckpoint(Connection conn, String runId, int stepNumber, long key, int rows) {
+        this.conn = conn;
+        this.runId = runId;
+        this.stepNumber = stepNumber;
+        this.interval = PipelineConfig.getCheckpointRows();
+        this.startKey = key;
+        this.startRows = rows;
+        this.key = key;
+        this.rows = rows;
+        this.savedRows = rows;
+    }
+
+    /** The step's saved position, or the start of the step when it has none. */
+    public static StepCheckpoint load(Connection conn, String runId, int stepNumber) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+            "SELECT LastKey, RowsDone FROM dbo.StepCheckpoints WHERE RunId = ? AND StepNumber = ?")) {
+            ps.setString(1, runId);
+            ps.setInt(2, stepNumber);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) return new StepCheckpoint(conn, runId, stepNumber, rs.getLong(1), rs.getInt(2));
+            }
+        }
+        return new StepCheckpoint(conn, runId, stepNumber, 0, 0);
+    }
+
+    /** Removes every checkpoint of a run (in the caller's transaction). Call once the run has succeeded. */
+    public static void clear(Connection conn, String runId) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM dbo.StepCheckpoints WHERE RunId = ?")) {
+            ps.setString(1, runId);
+            ps.executeUpdate();
+        }
+    }
+
+    /** True when an earlier attempt committed part of this step. */
+    public boolean isResumed() {
+        return startKey > 0 || startRows > 0;
+    }
+
+    /** Source rows with a key up to this one were handled by an earlier attempt. */
+    long key() {
+        return startKey;
+    }
+
+    /** Rows the step wrote before this attempt; counts continue from here. */
+    int rows() {
+        return startRows;
+    }
+
+    /** Key of the source row being handled. Rows up to it are covered by the next batch sent. */
+    void at(long key) {
+        this.key = key;
+    }
+
+    /** A batch has been sent and the step has written count rows so far; commits when a checkpoint is due. */
+    void flushed(int count) throws SQLException {
+        rows = count;
+        if (interval <= 0 || rows - savedRows < interval) return;
+        save();
+        conn.commit();
+    }
+
+    /** Records the step's end position; the caller commits it with the step's last batch. */
+    void finish(int count) throws SQLException {
+        rows = count;
+        save();
+    }
+
+    /**
+     * For steps that cannot continue part-way (one server-side statement, unordered reads): deletes the
+     * rows an earlier attempt committed to table for this run and starts the step over.
+     */
+    void restart(String table) throws SQLException {
+        if (!isResumed()) return;
+        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM " + table + " WHERE RunId = ?")) {
+            ps.setString(1, runId);
+            ps.executeUpdate();
+        }
+        startKey = key = 0;
+        startRows = rows = savedRows = 0;
+    }
+
+    private void save() throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(SAVE_SQL)) {
+            ps.setString(1, runId);
+            ps.setInt(2, stepNumber);
+            ps.setLong(3, key);
+            ps.setInt(4, rows);
+            ps.setLong(5, key);
+            ps.setInt(6, rows);
+            ps.executeUpdate();
+        }
+        savedRows = rows;
+    }
+}
@@ -0,0 +1,149 @@
+package com.pipeline.steps;
+
+import com.microsoft.sqlserver.jdbc.ISQLServerConnection;
+import com.pipeline.PipelineConfig;
+import com.pipeline.RunCancellation;
+import com.pipeline.StepProgress;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Streams rows into one table in batches and reports step progress after each batch. {@link #open}
+ * picks SQL Server bulk copy when LOAD_MODE=bulk and the connection is SQL Server, and batched
+ * single-row INSERTs otherwise. Values are passed in column order, typed to match the given JDBC
+ * types (String for NVARCHAR, Double for FLOAT). A cancelled run stops at the next batch. With a
+ * {@link StepCheckpoint} the step's transaction may be committed after a batch.
+ */
+abstract class TableWriter implements AutoCloseable {
+
+    static final int BATCH_SIZE = 2000;
+
+    private final String runId;
+    private final int stepNumber;
+    private final int batchSize;
+    private Integer total;
+    private StepCheckpoint checkpoint;
+    private int count;
+    private int pending;
+
+    TableWriter(String runId, int stepNumber, int batchSize) {
+        this.runId = runId;
+        this.stepNumber = stepNumber;
+        this.batchSize = batchSize;
+    }
+
+    static TableWriter open(Connection conn, String table, String[] columns, int[] types, String runId, int stepNumber) throws SQLException {
+        if (useBulkCopy(conn)) {
+            return new BulkCopyWriter(conn, table, columns, types, runId, stepNumber, PipelineConfig.getLoadBulkBatchSize());
+        }
+        return new BatchInsertWriter(conn, table, columns, types, runId, stepNumber);
+    }
+
+    /** LOAD_MODE=bulk, and only on SQL Server connections; anything else falls back to batched INSERTs. */
+    static boolean useBulkCopy(Connection conn) throws SQLException {
+        return "bulk".equals(PipelineConfig.getLoadMode()) && conn.isWrapperFor(ISQLServerConnection.class);
+    }
+
+    /** Total row count reported with progress, when the caller knows it up front. */
+    void setTotal(Integer total) {
+        this.total = total;
+    }
+
+    /** Reports each sent batch to the checkpoint; the count continues from the rows it already holds. */
+    void setCheckpoint(StepCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+        this.count = checkpoint.rows();
+    }
+
+    void add(Object... values) throws SQLException {
+        append(values);
+        count++;
+        if (++pending >= batchSize) {
+            RunCancellation.check(runId);
+            flush();
+            pending = 0;
+            if (checkpoint != null) checkpoint.flushed(count);
+            if (StepProgress.shouldUpdate(count)) {
+                StepProgress.update(runId, stepNumber, count, total);
+            }
+        }
+    }
+
+    /** Sends the last partial batch, records the end checkpoint and reports final progress. Returns the number of rows written. */
+    int finish() throws SQLException {
+        if (pending > 0) {
+            RunCancellation.check(runId);
+            flush();
+            pending = 0;
+        }
+        if (checkpoint != null) checkpoint.finish(count);
+        if (StepProgress.shouldUpdate(count)) {
+            StepProgress.update(runId, stepNumber, count, total);
+        }
+        return count;
+    }
+
+    int count() {
+        return count;
+    }
+
+    abstract boolean isBulk();
+
+    protected abstract void append(Object[] values) throws SQLException;
+
+    protected abstract void flush() throws SQLException;
+
+    @Override
+    public abstract void close() throws SQLException;
+
+    /** PreparedStatement addBatch/executeBatch, one INSERT per row. */
+    static final class BatchInsertWriter extends TableWriter {
+        private final PreparedStatement ps;
+        private final int[] types;
+
+        BatchInsertWriter(Connection conn, String table, String[] columns, int[] types, String runId, int stepNumber) throws SQLException {
+            super(runId, stepNumber, BATCH_SIZE);
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+            StringBuilder params = new StringBuilder();
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                    params.append(',');
+                }
+                sql.append(columns[i]);
+                params.append('?');
+            }
+            sql.append(") VALUES (").append(params).append(')');
+            this.ps = RunCancellation.track(runId, conn.prepareStatement(sql.toString()));
+            this.types = types;
+        }
+
+        @Override
+        boolean isBulk() {
+            return false;
+        }
+
+        @Override
+        protected void append(Object[] values) throws SQLException {
+            for (int i = 0; i < values.length; i++) {
+                Object v = values[i];
+                if (v == null) ps.setNull(i + 1, types[i]);
+                else if (v instanceof Double) ps.setDouble(i + 1, (Double) v);
+                else ps.setString(i + 1, v.toString());
+            }
+            ps.addBatch();
+        }
+
+        @Override
+        protected void flush() throws SQLException {
+            ps.executeBatch();
+        }
+
+        @Override
+        public void close() throws SQLException {
+            ps.close();
+        }
+    }
+}
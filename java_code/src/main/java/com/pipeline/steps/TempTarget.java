@@ -0,0 +1,66 @@
+package com.pipeline.steps;
+
+import com.pipeline.RunCancellation;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+
+/**
+ * Session temp table of migrate-ready rows (#Fused_Orders) that is merged into Target_Orders with one
+ * set-based MERGE. Rows are loaded through a {@link TableWriter}, so LOAD_MODE=bulk applies. Closing
+ * drops the table; it is also dropped with the session.
+ */
+final class TempTarget implements AutoCloseable {
+
+    private static final String TABLE = "#Fused_Orders";
+    private static final String[] COLUMNS = { "OrderId", "CustomerId", "Amount", "OrderDate", "AmountCategory" };
+    private static final int[] TYPES = { Types.NVARCHAR, Types.NVARCHAR, Types.DOUBLE, Types.NVARCHAR, Types.NVARCHAR };
+    private static final String DROP_SQL = "IF OBJECT_ID('tempdb..#Fused_Orders') IS NOT NULL DROP TABLE #Fused_Orders";
+
+    private final Connection conn;
+    private final String runId;
+    private final TableWriter writer;
+
+    private TempTarget(Connection conn, String runId, int stepNumber) throws SQLException {
+        this.conn = conn;
+        try (Statement st = conn.createStatement()) {
+            st.execute(DROP_SQL);
+            st.execute("CREATE TABLE #Fused_Orders (" +
+                "Seq INT IDENTITY(1,1) NOT NULL PRIMARY KEY, OrderId NVARCHAR(128) NOT NULL, CustomerId NVARCHAR(128) NOT NULL, " +
+                "Amount FLOAT NOT NULL, OrderDate NVARCHAR(64), AmountCategory NVARCHAR(32))");
+        }
+        this.runId = runId;
+        this.writer = TableWriter.open(conn, TABLE, COLUMNS, TYPES, runId, stepNumber);
+    }
+
+    /** Creates the temp table; progress of the load is reported against stepNumber. */
+    static TempTarget open(Connection conn, String runId, int stepNumber) throws SQLException {
+        return new TempTarget(conn, runId, stepNumber);
+    }
+
+    void add(String orderId, String customerId, double amount, String orderDate, String category) throws SQLException {
+        writer.add(orderId, customerId, amount, orderDate, category);
+    }
+
+    /** Flushes the load and upserts Target_Orders, last row per OrderId wins. Returns the rows loaded. */
+    int merge() throws SQLException {
+        int rows = writer.finish();
+        RunCancellation.check(runId);
+        try (Statement st = RunCancellation.track(runId, conn.createStatement())) {
+            st.executeUpdate(MigrateStep.setMergeSql(TABLE, "Seq"));
+        }
+        return rows;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            writer.close();
+        } finally {
+            try (Statement st = conn.createStatement()) {
+                st.execute(DROP_SQL);
+            } catch (SQLException ignored) {}
+        }
+    }
+}
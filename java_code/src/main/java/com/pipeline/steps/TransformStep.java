@@ -1,17 +1,24 @@
 package com.pipeline.steps;
 
-import com.pipeline.StepProgress;
-
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 
 public class TransformStep {
 
-    private static final int BATCH_SIZE = 2000;
+    static final String[] COLUMNS = { "RunId", "OrderId", "CustomerId", "Amount", "OrderDate", "AmountCategory" };
+    static final int[] TYPES = { Types.NVARCHAR, Types.NVARCHAR, Types.NVARCHAR, Types.DOUBLE, Types.NVARCHAR, Types.NVARCHAR };
 
-    public static int run(Connection conn, String runId, int stepNumber) throws SQLException {
+    /** Staging rows with an Id past the checkpoint are read in Id order, so a resumed step picks up where it left off. */
+    public static int run(Connection conn, String runId, int stepNumber, StepCheckpoint checkpoint) throws SQLException {
+        if (ServerStep.enabled()) {
+            checkpoint.restart("dbo.Staging_Orders_Transformed");
+            int rows = ServerStep.call(conn, "dbo.usp_Transform_Orders", runId, stepNumber);
+            checkpoint.finish(rows);
+            return rows;
+        }
         Integer total = null;
         try (PreparedStatement cnt = conn.prepareStatement("SELECT COUNT(*) FROM dbo.Staging_Orders WHERE RunId = ?")) {
             cnt.setString(1, runId);
@@ -19,44 +26,29 @@ public class TransformStep {
                 if (rs.next()) total = rs.getInt(1);
             }
         }
-        String sel = "SELECT * FROM dbo.Staging_Orders WHERE RunId = ?";
-        String ins = "INSERT INTO dbo.Staging_Orders_Transformed (RunId, OrderId, CustomerId, Amount, OrderDate, AmountCategory) VALUES (?,?,?,?,?,?)";
-        int count = 0;
+        String sel = "SELECT * FROM dbo.Staging_Orders WHERE RunId = ? AND Id > ? ORDER BY Id";
         try (PreparedStatement select = conn.prepareStatement(sel);
-             PreparedStatement insert = conn.prepareStatement(ins)) {
+             TableWriter insert = TableWriter.open(conn, "dbo.Staging_Orders_Transformed", COLUMNS, TYPES, runId, stepNumber)) {
+            insert.setTotal(total);
+            insert.setCheckpoint(checkpoint);
             select.setString(1, runId);
+            select.setLong(2, checkpoint.key());
             try (ResultSet rs = select.executeQuery()) {
-                int batchCount = 0;
                 while (rs.next()) {
+                    checkpoint.at(rs.getLong("Id"));
                     double amount = rs.getDouble("Amount");
-                    String category;
-                    if (amount < 0) {
-                        category = "InvalidNegativeAmountExceedsMaxLength"; // 33 chars -> fails NVARCHAR(32)
-                    } else {
-                        category = amount < 50 ? "Low" : amount < 200 ? "Medium" : "High";
-                    }
-                    insert.setString(1, runId);
-                    insert.setString(2, rs.getString("OrderId"));
-                    insert.setString(3, rs.getString("CustomerId"));
-                    insert.setDouble(4, amount);
-                    insert.setString(5, rs.getString("OrderDate"));
-                    insert.setString(6, category);
-                    insert.addBatch();
-                    count++;
-                    if (++batchCount >= BATCH_SIZE) {
-                        insert.executeBatch();
-                        batchCount = 0;
-                        if (StepProgress.shouldUpdate(count)) {
-                            StepProgress.update(runId, stepNumber, count, total);
-                        }
-                    }
-                }
-                if (batchCount > 0) insert.executeBatch();
-                if (StepProgress.shouldUpdate(count)) {
-                    StepProgress.update(runId, stepNumber, count, total);
+                    insert.add(runId, rs.getString("OrderId"), rs.getString("CustomerId"), amount, rs.getString("OrderDate"), category(amount));
                 }
             }
+            return insert.finish();
+        }
+    }
+
+    /** AmountCategory bucket for an amount. */
+    static String category(double amount) {
+        if (amount < 0) {
+            return "InvalidNegativeAmountExceedsMaxLength"; // 33 chars -> fails NVARCHAR(32)
         }
-        return count;
+        return amount < 50 ? "Low" : amount < 200 ? "Medium" : "High";
     }
 }
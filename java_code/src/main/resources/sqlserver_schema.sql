@@ -1,5 +1,12 @@
 -- SQL Server pipeline schema
+-- Bump Database.SCHEMA_VERSION with every change to this file so existing databases are re-bootstrapped.
 
+IF OBJECT_ID('dbo.SchemaVersion', 'U') IS NULL
+CREATE TABLE dbo.SchemaVersion (
+    Version         INT NOT NULL PRIMARY KEY,
+    AppliedAt       DATETIME2 NOT NULL DEFAULT SYSDATETIMEOFFSET()
+);
+GO
 IF OBJECT_ID('dbo.PipelineRuns', 'U') IS NULL
 CREATE TABLE dbo.PipelineRuns (
     RunId           NVARCHAR(64) NOT NULL PRIMARY KEY,
@@ -9,12 +16,41 @@ CREATE TABLE dbo.PipelineRuns (
     StartedAt       NVARCHAR(64),
     FinishedAt      NVARCHAR(64),
     Status          NVARCHAR(32) NOT NULL DEFAULT N'Running',
+    SourcePath      NVARCHAR(1024) NULL,
+    SourceHash      CHAR(64) NULL,
+    SourceSize      BIGINT NULL,
+    SourceModifiedAt BIGINT NULL,
+    QueuedBy        NVARCHAR(128) NULL,
     CreatedAt       DATETIME2 NOT NULL DEFAULT SYSDATETIMEOFFSET()
 );
 GO
+-- Landing file of the run, needed to resume it; added to databases created before it
+IF COL_LENGTH('dbo.PipelineRuns', 'SourcePath') IS NULL
+ALTER TABLE dbo.PipelineRuns ADD SourcePath NVARCHAR(1024) NULL;
+GO
+-- SHA-256, size and modification time (epoch ms) of the landing file, recorded when DEDUP_POLICY is not off
+IF COL_LENGTH('dbo.PipelineRuns', 'SourceHash') IS NULL
+ALTER TABLE dbo.PipelineRuns ADD SourceHash CHAR(64) NULL, SourceSize BIGINT NULL, SourceModifiedAt BIGINT NULL;
+GO
+-- Node whose in-memory run queue holds a Queued run (SCHEDULER_NODE_ID)
+IF COL_LENGTH('dbo.PipelineRuns', 'QueuedBy') IS NULL
+ALTER TABLE dbo.PipelineRuns ADD QueuedBy NVARCHAR(128) NULL;
+GO
 IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_PipelineRuns_RunNumber' AND object_id = OBJECT_ID('dbo.PipelineRuns'))
 CREATE UNIQUE INDEX IX_PipelineRuns_RunNumber ON dbo.PipelineRuns(RunNumber);
 GO
+-- Hash reuse lookup by size and modification time (SourcePath is too wide for a key, so it is included)
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_PipelineRuns_SourceFile' AND object_id = OBJECT_ID('dbo.PipelineRuns'))
+CREATE INDEX IX_PipelineRuns_SourceFile ON dbo.PipelineRuns(SourceSize, SourceModifiedAt)
+    INCLUDE (SourcePath, SourceHash) WHERE SourceHash IS NOT NULL;
+GO
+-- Run numbers; starts after the highest existing RunNumber when added to an existing database
+IF OBJECT_ID('dbo.PipelineRunNumbers', 'SO') IS NULL
+BEGIN
+    DECLARE @start INT = (SELECT ISNULL(MAX(RunNumber), 0) + 1 FROM dbo.PipelineRuns);
+    EXEC (N'CREATE SEQUENCE dbo.PipelineRunNumbers AS INT START WITH ' + CAST(@start AS NVARCHAR(20)) + N' INCREMENT BY 1 CACHE 50');
+END
+GO
 IF OBJECT_ID('dbo.StepRuns', 'U') IS NULL
 CREATE TABLE dbo.StepRuns (
     StepRunId       INT IDENTITY(1,1) NOT NULL PRIMARY KEY,
@@ -32,6 +68,17 @@ GO
 IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_StepRuns_RunId' AND object_id = OBJECT_ID('dbo.StepRuns'))
 CREATE INDEX IX_StepRuns_RunId ON dbo.StepRuns(RunId);
 GO
+-- Last committed position of a step: landing file row number (Pull) or source table Id (other steps)
+IF OBJECT_ID('dbo.StepCheckpoints', 'U') IS NULL
+CREATE TABLE dbo.StepCheckpoints (
+    RunId           NVARCHAR(64) NOT NULL,
+    StepNumber      INT NOT NULL,
+    LastKey         BIGINT NOT NULL,
+    RowsDone        INT NOT NULL,
+    UpdatedAt       DATETIME2 NOT NULL DEFAULT SYSUTCDATETIME(),
+    CONSTRAINT PK_StepCheckpoints PRIMARY KEY (RunId, StepNumber)
+);
+GO
 IF OBJECT_ID('dbo.PipelineLogs', 'U') IS NULL
 CREATE TABLE dbo.PipelineLogs (
     LogId           INT IDENTITY(1,1) NOT NULL PRIMARY KEY,
@@ -115,6 +162,65 @@ CREATE TABLE dbo.PipelineSchedules (
     CreatedAt       DATETIME2 NOT NULL DEFAULT SYSDATETIMEOFFSET(),
     UpdatedAt       DATETIME2 NOT NULL DEFAULT SYSDATETIMEOFFSET(),
     LastRunAt       DATETIME2 NULL,
-    NextRunAt       DATETIME2 NULL
+    NextRunAt       DATETIME2 NULL,
+    ClaimedBy       NVARCHAR(128) NULL,
+    ClaimExpiresAt  DATETIME2 NULL
 );
 GO
+-- Schedule claims (one node runs each occurrence); added to databases created before them
+IF COL_LENGTH('dbo.PipelineSchedules', 'ClaimedBy') IS NULL
+ALTER TABLE dbo.PipelineSchedules ADD ClaimedBy NVARCHAR(128) NULL, ClaimExpiresAt DATETIME2 NULL;
+GO
+-- Server-side Extract (STEP_EXECUTION=server): same cleansing rules as ExtractStep. Rows without an
+-- OrderId are dropped, a missing CustomerId becomes UNKNOWN, a missing Amount becomes 0 and OrderDate
+-- is kept only when it is a valid yyyy-MM-dd date. ORDER BY keeps landing order in the identity column.
+-- Values are trimmed of CHAR(1)-CHAR(32) at both ends, like Java's String.trim() (LTRIM/RTRIM only
+-- strip spaces, so a tab or CR would survive into Staging_Orders).
+CREATE OR ALTER PROCEDURE dbo.usp_Extract_Orders
+    @RunId          NVARCHAR(64),
+    @Rows           INT OUTPUT
+AS
+BEGIN
+    SET NOCOUNT ON;
+    DECLARE @ws NVARCHAR(32) = N'', @i INT = 1;
+    WHILE @i <= 32
+    BEGIN
+        SET @ws += NCHAR(@i);
+        SET @i += 1;
+    END;
+    INSERT INTO dbo.Staging_Orders (RunId, OrderId, CustomerId, Amount, OrderDate)
+    SELECT @RunId,
+           c.OrderId,
+           CASE WHEN c.CustomerId IS NULL OR c.CustomerId = N'' THEN N'UNKNOWN' ELSE c.CustomerId END,
+           ISNULL(l.Amount, 0),
+           CASE WHEN c.OrderDate LIKE N'[0-9][0-9][0-9][0-9]-[0-9][0-9]-[0-9][0-9]' AND TRY_CONVERT(DATE, c.OrderDate, 23) IS NOT NULL
+                THEN CONVERT(NVARCHAR(10), TRY_CONVERT(DATE, c.OrderDate, 23), 23) END
+    FROM dbo.Landing_Orders l
+    CROSS APPLY (SELECT TRIM(@ws FROM l.OrderId) AS OrderId,
+                        TRIM(@ws FROM l.CustomerId) AS CustomerId,
+                        TRIM(@ws FROM l.OrderDate) AS OrderDate) c
+    WHERE l.RunId = @RunId AND c.OrderId <> N''
+    ORDER BY l.Id;
+    SET @Rows = @@ROWCOUNT;
+END
+GO
+-- Server-side Transform (STEP_EXECUTION=server): same buckets as TransformStep. Negative amounts get a
+-- 37-character category on purpose, which fails the NVARCHAR(32) column just like the Java path.
+CREATE OR ALTER PROCEDURE dbo.usp_Transform_Orders
+    @RunId          NVARCHAR(64),
+    @Rows           INT OUTPUT
+AS
+BEGIN
+    SET NOCOUNT ON;
+    INSERT INTO dbo.Staging_Orders_Transformed (RunId, OrderId, CustomerId, Amount, OrderDate, AmountCategory)
+    SELECT @RunId, OrderId, CustomerId, Amount, OrderDate,
+           CASE WHEN Amount < 0 THEN N'InvalidNegativeAmountExceedsMaxLength'
+                WHEN Amount < 50 THEN N'Low'
+                WHEN Amount < 200 THEN N'Medium'
+                ELSE N'High' END
+    FROM dbo.Staging_Orders
+    WHERE RunId = @RunId
+    ORDER BY Id;
+    SET @Rows = @@ROWCOUNT;
+END
+GO
@@ -24,7 +24,7 @@
 
   <div class="card">
     <h3 style="margin: 0 0 0.5rem; font-size: 1rem;">Running status check (6h timeout)</h3>
-    <p style="margin: 0 0 0.75rem; color: #71767b; font-size: 0.875rem;">Check all runs with status <strong>Running</strong>. Any run that has been running for more than 6 hours will be marked as <strong>Failed-TimeOut-6Hours</strong>.</p>
+    <p style="margin: 0 0 0.75rem; color: #71767b; font-size: 0.875rem;">Check all runs with status <strong>Running</strong> or <strong>Queued</strong>. Any run that has been running, or waiting in the queue, for more than 6 hours will be marked as <strong>Failed-TimeOut-6Hours</strong>.</p>
     <button type="button" id="checkRunningBtn" style="padding: 0.5rem 1rem; cursor: pointer; background: #1d9bf0; color: #fff; border: none; border-radius: 4px; font-size: 0.9rem;">Check running status now</button>
     <p id="checkResult" style="margin: 0.75rem 0 0; font-size: 0.875rem; display: none;"></p>
     <p id="checkError" class="error-msg" style="margin: 0.75rem 0 0; display: none;"></p>
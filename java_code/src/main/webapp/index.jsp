@@ -23,10 +23,12 @@
     <input type="text" id="filterPipeline" placeholder="Filter by pipeline name">
     <select id="filterStatus">
       <option value="">All statuses</option>
+      <option value="Queued">Queued</option>
       <option value="Running">Running</option>
       <option value="Success">Success</option>
       <option value="Failed">Failed</option>
       <option value="Failed-TimeOut-6Hours">Failed (timeout 6h)</option>
+      <option value="Duplicate">Duplicate</option>
     </select>
   </div>
 
@@ -47,7 +47,7 @@
     <h3 style="margin: 0 0 0.5rem; font-size: 1rem;">File path on server (required)</h3>
     <form id="triggerForm" style="display: flex; gap: 0.75rem; align-items: center; flex-wrap: wrap;">
       <input type="text" id="filePath" name="filePath" placeholder="e.g. /path/to/sample_1m.csv" required style="flex: 1; min-width: 200px;">
-      <input type="file" id="fileInput" accept=".csv,.json" style="display: none;">
+      <input type="file" id="fileInput" accept=".csv,.json,.ndjson,.jsonl" style="display: none;">
       <button type="button" id="browseBtn">Browse</button>
       <button type="submit" id="triggerBtn">Run pipeline</button>
     </form>
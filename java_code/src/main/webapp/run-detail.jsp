@@ -74,14 +74,15 @@
         document.getElementById('runTitle').textContent = run.PipelineName || 'Pipeline';
         document.getElementById('runMeta').innerHTML = (run.RunNumber != null ? '<span style="font-weight:600;margin-right:0.5rem">#' + run.RunNumber + '</span>' : '') + '<span class="mono">' + run.RunId + '</span>';
         var started = run.StartedAt ? new Date(run.StartedAt).toLocaleString() : '—';
-        var cancelBtn = run.Status === 'Running' ? ' <button type="button" id="cancelRunBtn" style="margin-left:0.5rem;padding:0.25rem 0.5rem;cursor:pointer;background:#f4212e;color:#fff;border:none;border-radius:4px;font-size:0.8rem;">Cancel run</button>' : '';
-        document.getElementById('runStatus').innerHTML = 'Status: <span class="' + statusClass(run.Status) + '">' + run.Status + '</span> · Started: ' + started + cancelBtn;
+        var cancelBtn = (run.Status === 'Running' || run.Status === 'Queued') ? ' <button type="button" id="cancelRunBtn" style="margin-left:0.5rem;padding:0.25rem 0.5rem;cursor:pointer;background:#f4212e;color:#fff;border:none;border-radius:4px;font-size:0.8rem;">Cancel run</button>' : '';
+        var resumeBtn = (run.Status === 'Failed' || run.Status === 'Cancelled' || run.Status === 'Failed-TimeOut-6Hours') ? ' <button type="button" id="resumeRunBtn" style="margin-left:0.5rem;padding:0.25rem 0.5rem;cursor:pointer;background:#1d9bf0;color:#fff;border:none;border-radius:4px;font-size:0.8rem;">Resume run</button>' : '';
+        document.getElementById('runStatus').innerHTML = 'Status: <span class="' + statusClass(run.Status) + '">' + run.Status + '</span> · Started: ' + started + cancelBtn + resumeBtn;
         var steps = run.steps || [];
         var ordered = [1,2,3,4].map(function(n) { return steps.find(function(s) { return s.StepNumber === n; }); }).filter(Boolean);
         if (ordered.length === 0) ordered = [1,2,3,4].map(function(n) { return { StepNumber: n, StepName: stepName(n), Status: 'Pending' }; });
         document.getElementById('stepsRow').innerHTML = ordered.map(function(s) { return renderStep(s, s.Status === 'Running'); }).join('');
         var note = document.getElementById('runningNote');
-        if (note) note.style.display = run.Status === 'Running' ? 'block' : 'none';
+        if (note) note.style.display = (run.Status === 'Running' || run.Status === 'Queued') ? 'block' : 'none';
       }
       function renderLogs(logs) {
         var box = document.getElementById('logsBox');
@@ -91,6 +92,55 @@
           return '<div class="log-line"><span class="log-time">' + new Date(l.LogAt).toLocaleTimeString() + '</span><span class="' + lc(l.Level) + '">' + (l.Level || 'Info') + '</span>' + (l.StepNumber != null ? '<span style="color:#1d9bf0">Step' + l.StepNumber + '</span>' : '') + '<span style="color:#e7e9ea">' + (l.Message || '') + '</span></div>';
         }).join('');
       }
+      var lastRun = null;
+      var lastLogs = [];
+      var lastLogId = null;
+      var stream = null;
+      var streamFailed = false;
+      function logKey(l) { return l.LogAt + '|' + l.Level + '|' + l.Message; }
+      // Live updates over Server-Sent Events while the run is in progress; polling is the fallback.
+      function openStream() {
+        if (stream || streamFailed || !window.EventSource) return stream;
+        stream = new EventSource(API + '/runs/' + encodeURIComponent(runId) + '/events');
+        stream.addEventListener('open', function() { refresh(); });
+        stream.addEventListener('progress', function(e) {
+          var d = JSON.parse(e.data);
+          var s = lastRun && (lastRun.steps || []).find(function(x) { return x.StepNumber === d.StepNumber; });
+          if (!s) return;
+          s.RowsProcessed = d.RowsProcessed;
+          s.RowsTotal = d.RowsTotal;
+          renderRun(lastRun);
+        });
+        stream.addEventListener('step', function(e) {
+          var d = JSON.parse(e.data);
+          if (!lastRun) return;
+          lastRun.steps = lastRun.steps || [];
+          var s = lastRun.steps.find(function(x) { return x.StepNumber === d.StepNumber; });
+          if (!s) { s = { StepNumber: d.StepNumber, StepName: stepName(d.StepNumber) }; lastRun.steps.push(s); }
+          Object.keys(d).forEach(function(k) { s[k] = d[k]; });
+          renderRun(lastRun);
+        });
+        stream.addEventListener('log', function(e) {
+          var d = JSON.parse(e.data);
+          var key = logKey(d);
+          if (lastLogs.some(function(l) { return logKey(l) === key; })) return;
+          lastLogs.push(d);
+          renderLogs(lastLogs);
+        });
+        stream.addEventListener('run', function() {
+          closeStream();
+          refresh();
+        });
+        stream.addEventListener('error', function() {
+          streamFailed = true;
+          closeStream();
+          refresh();
+        });
+        return stream;
+      }
+      function closeStream() {
+        if (stream) { stream.close(); stream = null; }
+      }
       var REFRESH_INTERVAL_MS = 30000;
       var FAST_REFRESH_INTERVAL_MS = 3000;  // until step 1 is completed
       var tick;
@@ -120,9 +170,17 @@
           document.getElementById('loading').style.display = 'none';
           if (!run) { document.getElementById('notFound').style.display = 'block'; return null; }
           document.getElementById('content').style.display = 'block';
+          lastRun = run;
           renderRun(run);
           var intervalMs = REFRESH_INTERVAL_MS;
-          if (run.Status === 'Running') {
+          if (run.Status === 'Running' && openStream()) {
+            if (tick) { clearTimeout(tick); tick = null; }
+            var noteEl = document.getElementById('nextCheckNote');
+            var logsNoteEl = document.getElementById('nextCheckLogs');
+            if (noteEl) noteEl.style.display = 'none';
+            if (logsNoteEl) logsNoteEl.style.display = 'none';
+            if (countdownTick) { clearInterval(countdownTick); countdownTick = null; }
+          } else if (run.Status === 'Running' || run.Status === 'Queued') {
             if (!step1Completed(run)) intervalMs = FAST_REFRESH_INTERVAL_MS;
             nextRefreshAt = Date.now() + intervalMs;
             var secEl = document.getElementById('refreshIntervalSec');
@@ -136,6 +194,7 @@
             }
             tick = setTimeout(function() { tick = null; refresh(); }, intervalMs);
           } else {
+            closeStream();
             if (tick) {
               clearTimeout(tick);
               tick = null;
@@ -146,9 +205,18 @@
             if (logsNoteEl) logsNoteEl.style.display = 'none';
             if (countdownTick) { clearInterval(countdownTick); countdownTick = null; }
           }
-          return fetch(API + '/runs/' + encodeURIComponent(runId) + '/logs').then(function(r) { return r.ok ? r.json() : []; });
+          // After the first load only rows newer than the last LogId seen are fetched
+          var logsUrl = API + '/runs/' + encodeURIComponent(runId) + '/logs' + (lastLogId != null ? '?afterLogId=' + lastLogId : '');
+          return fetch(logsUrl).then(function(r) { return r.ok ? r.json() : []; });
         }).then(function(data) {
-          if (data != null) renderLogs(Array.isArray(data) ? data : []);
+          if (data != null) {
+            (Array.isArray(data) ? data : []).forEach(function(l) {
+              if (l.LogId != null && (lastLogId == null || l.LogId > lastLogId)) lastLogId = l.LogId;
+              var key = logKey(l);
+              if (!lastLogs.some(function(x) { return logKey(x) === key; })) lastLogs.push(l);
+            });
+            renderLogs(lastLogs);
+          }
         });
       }
       document.addEventListener('click', function(e) {
@@ -163,6 +231,17 @@
             if (btn) { btn.disabled = false; btn.textContent = 'Cancel run'; }
           });
         }
+        if (e.target && e.target.id === 'resumeRunBtn') {
+          e.target.disabled = true;
+          e.target.textContent = 'Resuming…';
+          fetch(API + '/runs/' + encodeURIComponent(runId) + '/resume', { method: 'POST' }).then(function(r) { return r.json(); }).then(function(data) {
+            if (data && data.ok) refresh();
+            else if (data && data.error) alert(data.error);
+          }).catch(function() { alert('Failed to resume'); }).finally(function() {
+            var btn = document.getElementById('resumeRunBtn');
+            if (btn) { btn.disabled = false; btn.textContent = 'Resume run'; }
+          });
+        }
       });
       refresh();
     }
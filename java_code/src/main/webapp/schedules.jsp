@@ -56,7 +56,7 @@
       </div>
       <div>
         <label style="display: block; font-size: 0.8rem; color: #71767b; margin-bottom: 0.25rem;">CSV or JSON file</label>
-        <input type="file" id="addFile" accept=".csv,.json" required>
+        <input type="file" id="addFile" accept=".csv,.json,.ndjson,.jsonl" required>
       </div>
       <button type="submit" id="addBtn">Add schedule</button>
     </form>
@@ -0,0 +1,150 @@
+package com.pipeline.steps;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parse-only throughput check for the landing CSV path (no database). Compares the original
+ * readAllLines + per-line split parser against {@link CsvReader}, {@link MappedCsvReader} and
+ * {@link ParallelCsvReader} (ordered, one worker per core).
+ * <p>
+ * Lives with the tests so it stays out of the WAR. Usage (from java_code, after mvn test-compile):
+ * <pre>java -cp target/classes:target/test-classes com.pipeline.steps.CsvBenchmark [file.csv ...]</pre>
+ * With no arguments it runs on ../python_code/data/landing/*_100k.csv.
+ */
+public class CsvBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String a : args) files.add(Paths.get(a));
+        if (files.isEmpty()) {
+            Path dir = Paths.get("../python_code/data/landing");
+            if (Files.isDirectory(dir)) {
+                try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*_100k.csv")) {
+                    for (Path f : ds) files.add(f);
+                }
+            }
+        }
+        if (files.isEmpty()) {
+            System.out.println("No input files. Pass CSV paths or run from java_code so ../python_code/data/landing/*_100k.csv is found");
+            return;
+        }
+        for (Path f : files) {
+            long bytes = Files.size(f);
+            System.out.println(f + " (" + bytes + " bytes)");
+            report("  line split (legacy)", bytes, () -> legacyParse(f));
+            report("  CsvReader          ", bytes, () -> {
+                try (CsvSource csv = new CsvReader(Files.newBufferedReader(f))) {
+                    return tokenizerParse(csv);
+                }
+            });
+            report("  MappedCsvReader    ", bytes, () -> {
+                try (FileChannel ch = FileChannel.open(f, StandardOpenOption.READ);
+                     CsvSource csv = new MappedCsvReader(ch, 0, Long.MAX_VALUE)) {
+                    return tokenizerParse(csv);
+                }
+            });
+            int cores = Runtime.getRuntime().availableProcessors();
+            report("  ParallelCsvReader  ", bytes, () -> {
+                long[] rows = new long[1];
+                try {
+                    ParallelCsvReader.read(f, "bench", cores, true, row -> rows[0]++);
+                } catch (SQLException e) {
+                    throw new IOException(e);
+                }
+                return rows[0];
+            });
+        }
+    }
+
+    private interface Parse {
+        long run() throws IOException;
+    }
+
+    private static void report(String label, long bytes, Parse parse) throws IOException {
+        long rows = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) rows = parse.run();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long t0 = System.nanoTime();
+            rows = parse.run();
+            best = Math.min(best, System.nanoTime() - t0);
+        }
+        double secs = best / 1e9;
+        System.out.printf("%s %,d rows  best %.1f ms  %,.0f rows/s  %.1f MB/s%n",
+            label, rows, best / 1e6, rows / secs, bytes / secs / (1024 * 1024));
+    }
+
+    /** Mirrors the pre-tokenizer PullStep: readAllLines, a split per line and a header scan per column. */
+    private static long legacyParse(Path f) throws IOException {
+        List<String> lines = Files.readAllLines(f);
+        if (lines.isEmpty()) return 0;
+        String[] headers = lines.get(0).split(",");
+        long rows = 0;
+        LandingRow row = new LandingRow();
+        for (int i = 1; i < lines.size(); i++) {
+            String[] vals = legacySplit(lines.get(i));
+            row.orderId = legacyVal(vals, headers, "OrderId");
+            row.customerId = legacyVal(vals, headers, "CustomerId");
+            row.amount = legacyVal(vals, headers, "Amount");
+            row.orderDate = legacyVal(vals, headers, "OrderDate");
+            rows++;
+        }
+        return rows;
+    }
+
+    private static long tokenizerParse(CsvSource csv) throws IOException {
+        long rows = 0;
+        if (!csv.next()) return 0;
+        String[] headers = csv.fields();
+        int orderIdCol = CsvReader.columnIndex(headers, "OrderId");
+        int customerIdCol = CsvReader.columnIndex(headers, "CustomerId");
+        int amountCol = CsvReader.columnIndex(headers, "Amount");
+        int orderDateCol = CsvReader.columnIndex(headers, "OrderDate");
+        LandingRow row = new LandingRow();
+        while (csv.next()) {
+            row.orderId = csv.field(orderIdCol);
+            row.customerId = csv.field(customerIdCol);
+            row.amount = csv.field(amountCol);
+            row.orderDate = csv.field(orderDateCol);
+            rows++;
+        }
+        return rows;
+    }
+
+    private static String legacyVal(String[] vals, String[] headers, String key) {
+        for (int i = 0; i < headers.length; i++) {
+            if (headers[i].trim().equalsIgnoreCase(key) && i < vals.length) {
+                return vals[i] != null ? vals[i].trim() : null;
+            }
+        }
+        return null;
+    }
+
+    private static String[] legacySplit(String line) {
+        List<String> out = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean inQuotes = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') inQuotes = !inQuotes;
+            else if (c == ',' && !inQuotes) {
+                out.add(cur.toString().trim());
+                cur = new StringBuilder();
+            } else cur.append(c);
+        }
+        out.add(cur.toString().trim());
+        return out.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,11 @@
+package com.pipeline.steps;
+
+import java.io.StringReader;
+
+class CsvReaderTest extends CsvSourceTest {
+
+    @Override
+    CsvSource open(String csv) {
+        return new CsvReader(new StringReader(csv));
+    }
+}
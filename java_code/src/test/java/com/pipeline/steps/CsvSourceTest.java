@@ -0,0 +1,78 @@
+package com.pipeline.steps;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/** RFC 4180 edge cases every {@link CsvSource} must read the same way. */
+abstract class CsvSourceTest {
+
+    /** A reader over the UTF-8 bytes of csv. */
+    abstract CsvSource open(String csv) throws IOException;
+
+    private List<List<String>> records(String csv) throws IOException {
+        List<List<String>> out = new ArrayList<>();
+        try (CsvSource src = open(csv)) {
+            while (src.next()) out.add(Arrays.asList(src.fields()));
+        }
+        return out;
+    }
+
+    @Test
+    void doubledQuotesInsideQuotedField() throws IOException {
+        assertEquals(List.of(List.of("1", "say \"hi\"", "x")), records("1,\"say \"\"hi\"\"\",x\n"));
+    }
+
+    @Test
+    void commaAndLineBreaksInsideQuotedField() throws IOException {
+        assertEquals(List.of(List.of("1", "a,b\nc\r\nd", "x"), List.of("2", "e", "y")),
+            records("1,\"a,b\nc\r\nd\",x\n2,e,y\n"));
+    }
+
+    @Test
+    void crlfAndBareCrEndRecords() throws IOException {
+        assertEquals(List.of(List.of("OrderId", "Amount"), List.of("1", "10"), List.of("2", "20")),
+            records("OrderId,Amount\r\n1,10\r2,20\r\n"));
+    }
+
+    @Test
+    void lastRecordWithoutLineBreak() throws IOException {
+        assertEquals(List.of(List.of("1", "2"), List.of("3", "4")), records("1,2\n3,4"));
+    }
+
+    @Test
+    void trailingEmptyField() throws IOException {
+        try (CsvSource src = open("1,2,\r\n")) {
+            src.next();
+            assertEquals(3, src.fieldCount());
+            assertEquals("", src.field(2));
+            assertNull(src.field(3));
+        }
+    }
+
+    @Test
+    void emptyQuotedField() throws IOException {
+        assertEquals(List.of(List.of("1", "", "x")), records("1,\"\",x\n"));
+    }
+
+    @Test
+    void byteOrderMarkIsSkipped() throws IOException {
+        assertEquals(List.of(List.of("OrderId", "Amount"), List.of("1", "10")), records("\uFEFFOrderId,Amount\n1,10\n"));
+    }
+
+    @Test
+    void valuesAreTrimmed() throws IOException {
+        assertEquals(List.of(List.of("1", "a b", "x")), records(" 1 ,\t a b \t, x\n"));
+    }
+
+    @Test
+    void nonAsciiText() throws IOException {
+        assertEquals(List.of(List.of("1", "Zürich", "東京")), records("1,\"Zürich\",東京\n"));
+    }
+}
@@ -0,0 +1,47 @@
+package com.pipeline.steps;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedCsvReaderTest extends CsvSourceTest {
+
+    @TempDir
+    Path dir;
+
+    private FileChannel ch;
+
+    @Override
+    CsvSource open(String csv) throws IOException {
+        Path file = Files.write(dir.resolve("orders.csv"), csv.getBytes(StandardCharsets.UTF_8));
+        ch = FileChannel.open(file, StandardOpenOption.READ);
+        return new MappedCsvReader(ch, 0, Long.MAX_VALUE);
+    }
+
+    /** Same policy as CsvReader over Files.newBufferedReader: invalid UTF-8 fails instead of loading U+FFFD. */
+    @Test
+    void invalidUtf8Fails() throws IOException {
+        Path file = Files.write(dir.resolve("bad.csv"), new byte[] { '1', ',', (byte) 0xC3, '(', '\n' });
+        ch = FileChannel.open(file, StandardOpenOption.READ);
+        try (CsvSource csv = new MappedCsvReader(ch, 0, Long.MAX_VALUE)) {
+            assertTrue(csv.next());
+            assertThrows(MalformedInputException.class, () -> csv.field(1));
+        }
+    }
+
+    @AfterEach
+    void closeChannel() throws IOException {
+        if (ch != null) ch.close();
+    }
+}
@@ -0,0 +1,95 @@
+package com.pipeline.steps;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The quote-parity split must give the same rows as a sequential read wherever the chunk boundaries
+ * fall: in file order when ordered, as the same multiset when not.
+ */
+class ParallelCsvReaderTest {
+
+    private static final String HEADER = "OrderId,CustomerId,Amount,OrderDate\r\n";
+    private static final String ROWS =
+        "1,\"C \"\"one\"\"\",10.5,2024-01-01\r\n" +
+        "2,\"multi\nline\r\nnote\",20,2024-01-02\n" +
+        "3,C3,,2024-01-03\r" +
+        "4,\"a,b\",40,2024-01-04\r\n" +
+        "5,\"\"\"quoted\"\"\",50,\n";
+    private static final String CSV = HEADER + ROWS + ROWS + ROWS + "6,C6,60,2024-01-06";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void cutInsideQuotedFieldWithLineBreaks() throws Exception {
+        assertSameRows(cutAt(CSV.indexOf("multi\nline") + "multi".length()));
+        assertSameRows(cutAt(CSV.indexOf("line\r\nnote") + "line\r".length()));
+    }
+
+    @Test
+    void cutInsideDoubledQuote() throws Exception {
+        assertSameRows(cutAt(CSV.indexOf("\"\"one") + 1));
+        assertSameRows(cutAt(CSV.indexOf("\"\"\"quoted") + 2));
+    }
+
+    @Test
+    void cutBetweenCrAndLf() throws Exception {
+        assertSameRows(cutAt(CSV.indexOf("10.5,2024-01-01\r\n") + "10.5,2024-01-01\r".length()));
+    }
+
+    @Test
+    void everyChunkSize() throws Exception {
+        for (int chunk = 1; chunk <= CSV.length(); chunk++) assertSameRows(chunk);
+    }
+
+    /** Chunk size that puts the first cut at the given offset of CSV. */
+    private static int cutAt(int offset) {
+        return offset - HEADER.length();
+    }
+
+    private void assertSameRows(int chunkSize) throws IOException, SQLException {
+        Path file = Files.write(dir.resolve("orders.csv"), CSV.getBytes(StandardCharsets.UTF_8));
+        List<List<String>> expected = sequential();
+
+        List<List<String>> ordered = new ArrayList<>();
+        ParallelCsvReader.read(file, "run", 3, true, row -> ordered.add(values(row)), chunkSize);
+        assertEquals(expected, ordered, "ordered, chunk " + chunkSize);
+
+        List<List<String>> unordered = new ArrayList<>();
+        ParallelCsvReader.read(file, "run", 3, false, row -> unordered.add(values(row)), chunkSize);
+        assertEquals(sorted(expected), sorted(unordered), "unordered, chunk " + chunkSize);
+    }
+
+    private static List<List<String>> sequential() throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        try (CsvReader csv = new CsvReader(new StringReader(CSV))) {
+            csv.next();
+            PullStep.CsvColumns cols = new PullStep.CsvColumns(csv.fields());
+            while (csv.next()) rows.add(values(cols.fill(csv, "run", new LandingRow())));
+        }
+        return rows;
+    }
+
+    private static List<String> values(LandingRow row) {
+        return Arrays.asList(row.orderId, row.customerId, row.amount, row.orderDate);
+    }
+
+    private static List<List<String>> sorted(List<List<String>> rows) {
+        List<List<String>> out = new ArrayList<>(rows);
+        out.sort((a, b) -> String.valueOf(a).compareTo(String.valueOf(b)));
+        return out;
+    }
+}